@@ -0,0 +1,144 @@
+/*
+ * Name: Felix Najera
+ * PID:  A17618969
+ */
+
+import java.util.*;
+
+/**
+ * Frozen, read-only copy of a BSTree. Keys are kept in one sorted array and
+ * each key's postings in a read-only array-backed PostingList, so lookups are
+ * a binary search and results are returned as views without defensive copies.
+ * Its keys and postings cannot be modified through it. The DocumentTable
+ * from getDocuments is the live one shared with the tree, not a copy; it is
+ * append-only, so ids the snapshot holds keep their documents.
+ *
+ * @author Felix Najera
+ * @since  8/27/24
+ */
+public class BSTSnapshot<T extends Comparable<? super T>>
+        implements SearchIndex<T>, Iterable<T> {
+
+    private final List<T> keys; // sorted keys
+    private final PostingList[] postings; // read-only postings, by key index
+    private final DocumentTable<T> documents; // table the posting ids refer to
+
+    /**
+     * Constructor used by BSTree.freeze()
+     *
+     * @param keys      Keys in ascending order
+     * @param postings  Read-only postings of each key
+     * @param documents Document table the ids refer to
+     */
+    BSTSnapshot(List<T> keys, PostingList[] postings, DocumentTable<T> documents) {
+        this.keys = Collections.unmodifiableList(keys);
+        this.postings = postings;
+        this.documents = documents;
+    }
+
+    /**
+     * Return the position of a key in the key array
+     *
+     * @param key Target key
+     * @return The key's index, negative if not found
+     * @throws NullPointerException If key is null
+     */
+    private int indexOf(T key) {
+        if (key == null) {
+            throw new NullPointerException("Key cannot be null");
+        }
+        return Collections.binarySearch(keys, key);
+    }
+
+    /**
+     * Return the position of a key that must be present
+     *
+     * @param key Target key
+     * @return The key's index
+     * @throws IllegalArgumentException If key is not found
+     */
+    private int requireIndex(T key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            throw new IllegalArgumentException("Key not found in the tree");
+        }
+        return index;
+    }
+
+    @Override
+    public boolean findKey(T key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Return an unmodifiable view of the documents related to 'key', sorted by
+     * document id
+     *
+     * @param key Target key
+     * @return Read-only list of documents related to key
+     * @throws NullPointerException     If key is null
+     * @throws IllegalArgumentException If key is not found
+     */
+    @Override
+    public List<T> findDataList(T key) {
+        PostingList keyPostings = postings[requireIndex(key)];
+        return new AbstractList<T>() {
+            @Override
+            public T get(int index) {
+                return documents.get(keyPostings.get(index));
+            }
+
+            @Override
+            public int size() {
+                return keyPostings.size();
+            }
+        };
+    }
+
+    @Override
+    public PostingList findPostings(T key) {
+        return postings[requireIndex(key)];
+    }
+
+    /**
+     * Return the position of the first key that is not less than 'key'
+     *
+     * @param key Bound, null for past the last key
+     * @param end Position to return for a null key
+     * @return The position
+     */
+    private int lowerBound(T key, int end) {
+        if (key == null) {
+            return end;
+        }
+        int index = Collections.binarySearch(keys, key);
+        return index >= 0 ? index : -(index + 1);
+    }
+
+    @Override
+    public Iterator<T> range(T lo, T hi) {
+        int from = lowerBound(lo, 0);
+        int to = Math.max(from, lowerBound(hi, keys.size()));
+        return keys.subList(from, to).iterator();
+    }
+
+    @Override
+    public DocumentTable<T> getDocuments() {
+        return documents;
+    }
+
+    @Override
+    public int getSize() {
+        return keys.size();
+    }
+
+    /**
+     * Return an iterator over the keys in ascending order
+     *
+     * @return Read-only key iterator
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return keys.iterator();
+    }
+}
@@ -4,6 +4,9 @@
  */
 
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Binary search tree implementation.
@@ -11,21 +14,30 @@ import java.util.*;
  * @author Felix Najera
  * @since  8/27/2024
  */
-public class BSTree<T extends Comparable<? super T>> implements Iterable {
+public class BSTree<T extends Comparable<? super T>> implements Iterable<T>, UpdatableIndex<T> {
 
     /* * * * * BST Instance Variables * * * * */
 
     private int nelems; // number of elements stored
+    private int modCount; // bumped whenever a key is added or removed
+    private long version; // bumped whenever keys or their data change
     private BSTNode root; // reference to root node
+    private final ArrayList<BSTNode> path = new ArrayList<>(); // scratch root-to-leaf path
+    private final boolean balanced; // keep the tree AVL-balanced on insert and remove
+    private final DocumentTable<T> documents; // non-null in posting-list mode
+    private final HashIndex hashIndex; // key to node, null unless enabled
 
     /* * * * * BST Node Inner Class * * * * */
 
     protected class BSTNode {
 
         T key;
-        LinkedList<T> dataList;
+        LinkedList<T> dataList; // null in posting-list mode
+        PostingList postings; // null unless in posting-list mode
         BSTNode left;
         BSTNode right;
+        int height; // height of the subtree rooted at this node
+        int size = 1; // number of keys in the subtree rooted at this node
 
         /**
          * A constructor that initializes the BSTNode instance variables.
@@ -38,21 +50,28 @@ public class BSTree<T extends Comparable<? super T>> implements Iterable {
         public BSTNode(BSTNode left, BSTNode right, LinkedList<T> dataList, T key) {
             this.left = left;
             this.right = right;
-            this.dataList = dataList;
             this.key = key;
+            setDataList(dataList);
         }
 
         /**
          * A constructor that initializes BSTNode variables. Note: This constructor is
          * used when you want to add a key with no related information yet. In this
-         * case, you must create an empty LinkedList for the node.
+         * case, you must create an empty LinkedList (or PostingList) for the node.
          *
          * @param left  Left child
          * @param right Right child
          * @param key   Node's key
          */
         public BSTNode(BSTNode left, BSTNode right, T key) {
-            this(left, right, new LinkedList<T>(), key);
+            this.left = left;
+            this.right = right;
+            this.key = key;
+            if (documents == null) {
+                dataList = new LinkedList<>();
+            } else {
+                postings = new PostingList();
+            }
         }
 
         /**
@@ -85,13 +104,21 @@ public class BSTree<T extends Comparable<? super T>> implements Iterable {
         }
 
         /**
-         * Return the linked list of the node
+         * Return the linked list of the node. In posting-list mode this is a
+         * new list built from the node's document ids.
          *
          * @return The linked list of the node
          */
         public LinkedList<T> getDataList() {
+            if (postings == null) {
+                return dataList;
+            }
 
-            return dataList;
+            LinkedList<T> list = new LinkedList<>();
+            for (int i = 0; i < postings.size(); i++) {
+                list.add(documents.get(postings.get(i)));
+            }
+            return list;
         }
 
         /**
@@ -118,7 +145,15 @@ public class BSTree<T extends Comparable<? super T>> implements Iterable {
          * @param newData New linked list
          */
         public void setDataList(LinkedList<T> newData) {
-            dataList = newData;
+            if (documents == null) {
+                dataList = newData;
+                return;
+            }
+
+            postings = new PostingList();
+            for (T data : newData) {
+                postings.add(documents.intern(data));
+            }
         }
 
         /**
@@ -127,7 +162,11 @@ public class BSTree<T extends Comparable<? super T>> implements Iterable {
          * @param data New data to be appended
          */
         public void addNewInfo(T data) {
-            dataList.add(data);
+            if (postings == null) {
+                dataList.add(data);
+            } else {
+                postings.add(documents.intern(data));
+            }
         }
 
         /**
@@ -138,7 +177,20 @@ public class BSTree<T extends Comparable<? super T>> implements Iterable {
          * @return True if data was found, false otherwise
          */
         public boolean removeInfo(T data) {
-            return dataList.remove(data);
+            if (postings == null) {
+                return dataList.remove(data);
+            }
+            int id = documents.indexOf(data);
+            return id >= 0 && postings.remove(id);
+        }
+
+        /**
+         * Return the number of documents related to the key
+         *
+         * @return Length of the node's list
+         */
+        int dataSize() {
+            return postings == null ? dataList.size() : postings.size();
         }
     }
 
@@ -148,8 +200,93 @@ public class BSTree<T extends Comparable<? super T>> implements Iterable {
      * 0-arg constructor that initializes root to null and nelems to 0
      */
     public BSTree() {
+        this(false);
+    }
+
+    /**
+     * Constructor that initializes an empty tree. A balanced tree rebalances
+     * itself (AVL) on every insert and remove, so the height stays O(log n)
+     * even when the keys arrive in sorted order.
+     *
+     * @param balanced true to keep the tree AVL-balanced
+     */
+    public BSTree(boolean balanced) {
+        this(balanced, null);
+    }
+
+    /**
+     * Constructor that initializes an empty tree in posting-list mode when
+     * 'documents' is non-null. In that mode each node stores a sorted int[] of
+     * document ids interned in 'documents' instead of a LinkedList, so trees
+     * sharing a table store every document once. findDataList then returns a
+     * new list built from the ids, sorted by id; a document added twice under
+     * a key is listed twice, as in the LinkedList trees.
+     *
+     * @param balanced  true to keep the tree AVL-balanced
+     * @param documents Shared document table, null for plain LinkedList storage
+     */
+    public BSTree(boolean balanced, DocumentTable<T> documents) {
+        this(balanced, documents, false);
+    }
+
+    /**
+     * Constructor that can also keep a hash index from key to node next to
+     * the tree. Exact-match lookups (findKey, findDataList, findPostings,
+     * insertData, insertOrAppend on an existing key, ...) then take O(1) on
+     * average instead of a walk down the tree; ordered operations still use
+     * the tree. Costs two array slots per key and requires keys whose equals
+     * and hashCode agree with compareTo, as String's do.
+     *
+     * @param balanced  true to keep the tree AVL-balanced
+     * @param documents Shared document table, null for plain LinkedList storage
+     * @param hashed    true to keep a hash index of the keys
+     */
+    public BSTree(boolean balanced, DocumentTable<T> documents, boolean hashed) {
         nelems = 0;
         root = null;
+        this.balanced = balanced;
+        this.documents = documents;
+        this.hashIndex = hashed ? new HashIndex() : null;
+    }
+
+    /**
+     * Return true if this tree rebalances itself on insert
+     *
+     * @return True if the tree is AVL-balanced, false otherwise
+     */
+    public boolean isBalanced() {
+        return balanced;
+    }
+
+    /**
+     * Return true if this tree keeps a hash index of its keys
+     *
+     * @return True if exact-match lookups use the hash index
+     */
+    public boolean isHashed() {
+        return hashIndex != null;
+    }
+
+    /**
+     * Return the document table used in posting-list mode
+     *
+     * @return The document table, null if the tree stores plain LinkedLists
+     */
+    @Override
+    public DocumentTable<T> getDocuments() {
+        return documents;
+    }
+
+    /**
+     * Return the version of the tree, bumped by every method that adds or
+     * removes keys or data. Changes made directly through BSTNode are not
+     * counted.
+     *
+     * @return The tree version
+     */
+    @Override
+    public long getVersion() {
+        return version;
     }
 
     /**
@@ -166,6 +303,7 @@ public class BSTree<T extends Comparable<? super T>> implements Iterable {
      *
      * @return The BST size
      */
+    @Override
     public int getSize() {
         return nelems;
     }
@@ -178,35 +316,291 @@ public class BSTree<T extends Comparable<? super T>> implements Iterable {
      * @throws NullPointerException ensures the key is actually present
      */
     public boolean insert(T key) {
-        // insertHelper?
         if (key == null) {
             throw new NullPointerException("Key cannot be null");
         }
-        root = insertHelper(root, key);
+        insertHelper(key);
         return true;
     }
 
     /*
-    * Helper function for making the tree actually look like a tree
+    * Helper function for making the tree actually look like a tree. Walks down
+    * iteratively, remembering the path so heights can be fixed (and the tree
+    * rebalanced) on the way back up without recursion.
     *
-    * @param node the proceding node and it's leaves
     * @param key the actual data of the node
-    * @return another node instantiation for placing for left or right  
+    * @return the node holding key, either existing or newly created
     */
-    private BSTNode insertHelper(BSTNode node, T key) {
-        if (node == null) {
-            nelems++;
-            return new BSTNode(null, null, key);
+    private BSTNode insertHelper(T key) {
+        if (hashIndex != null) {
+            BSTNode existing = hashIndex.get(key);
+            if (existing != null) {
+                return existing;
+            }
         }
-        
-        if (key.compareTo(node.key) < 0) {
-            node.left = insertHelper(node.left, key);
-        } else if (key.compareTo(node.key) > 0) {
-            node.right = insertHelper(node.right, key);
+
+        BSTNode node = root;
+        BSTNode parent = null;
+        int compare = 0;
+        while (node != null) {
+            compare = key.compareTo(node.key);
+            if (compare == 0) {
+                path.clear();
+                return node;
+            }
+            path.add(node);
+            parent = node;
+            node = compare < 0 ? node.left : node.right;
+        }
+
+        BSTNode created = new BSTNode(null, null, key);
+        if (hashIndex != null) {
+            hashIndex.put(key, created);
+        }
+        nelems++;
+        modCount++;
+        version++;
+        if (parent == null) {
+            root = created;
+        } else if (compare < 0) {
+            parent.left = created;
+        } else {
+            parent.right = created;
+        }
+        retrace();
+        return created;
+    }
+
+    /**
+     * Walk back up the recorded path, fixing heights and subtree sizes and
+     * rebalancing. Every size on the path changes, so the walk always goes
+     * all the way up. Leaves the path empty.
+     */
+    private void retrace() {
+        for (int i = path.size() - 1; i >= 0; i--) {
+            BSTNode node = path.get(i);
+            update(node);
+            BSTNode subtree = balanced ? rebalance(node) : node;
+            if (subtree != node) {
+                replaceChild(i == 0 ? null : path.get(i - 1), node, subtree);
+            }
+        }
+        path.clear();
+    }
+
+    /**
+     * Point a parent (or the root) at a new subtree root
+     *
+     * @param parent   Parent node, null if child is the root
+     * @param child    Old child
+     * @param subtree  New child
+     */
+    private void replaceChild(BSTNode parent, BSTNode child, BSTNode subtree) {
+        if (parent == null) {
+            root = subtree;
+        } else if (parent.left == child) {
+            parent.left = subtree;
+        } else {
+            parent.right = subtree;
+        }
+    }
+
+    /* * * * * Hash Index * * * * */
+
+    /**
+     * Open-addressing hash table from key to node, with linear probing and
+     * at most half of the slots in use. Each slot also keeps the key's hash,
+     * so most mismatches are rejected without calling equals. Removal shifts
+     * later entries of the probe run back instead of leaving tombstones.
+     */
+    private class HashIndex {
+        private static final int INITIAL_CAPACITY = 16;
+
+        private Object[] nodes = new Object[INITIAL_CAPACITY]; // BSTNode or null
+        private int[] hashes = new int[INITIAL_CAPACITY];
+        private int count; // number of slots in use
+
+        /**
+         * Return the spread hash of a key
+         */
+        private int hash(T key) {
+            int h = key.hashCode();
+            return h ^ (h >>> 16);
+        }
+
+        @SuppressWarnings("unchecked")
+        private BSTNode node(int slot) {
+            return (BSTNode) nodes[slot];
+        }
+
+        /**
+         * Return the slot holding 'key', or the empty slot ending its run
+         */
+        private int slot(T key, int h) {
+            int mask = nodes.length - 1;
+            int slot = h & mask;
+            while (nodes[slot] != null
+                    && (hashes[slot] != h || !key.equals(node(slot).key))) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        /**
+         * Return the node holding 'key', null if there is none
+         */
+        BSTNode get(T key) {
+            return node(slot(key, hash(key)));
+        }
+
+        /**
+         * Map 'key' to 'node', replacing any earlier node for the key
+         */
+        void put(T key, BSTNode node) {
+            int h = hash(key);
+            int slot = slot(key, h);
+            if (nodes[slot] == null) {
+                if (2 * (count + 1) > nodes.length) {
+                    resize();
+                    slot = slot(key, h);
+                }
+                count++;
+            }
+            nodes[slot] = node;
+            hashes[slot] = h;
+        }
+
+        /**
+         * Remove 'key' if present
+         */
+        void remove(T key) {
+            int slot = slot(key, hash(key));
+            if (nodes[slot] == null) {
+                return;
+            }
+            count--;
+
+            // pull back later entries that could no longer be reached
+            int mask = nodes.length - 1;
+            int hole = slot;
+            for (int next = (hole + 1) & mask; nodes[next] != null; next = (next + 1) & mask) {
+                int home = hashes[next] & mask;
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    nodes[hole] = nodes[next];
+                    hashes[hole] = hashes[next];
+                    hole = next;
+                }
+            }
+            nodes[hole] = null;
+        }
+
+        /**
+         * Double the table and reinsert every entry
+         */
+        private void resize() {
+            Object[] oldNodes = nodes;
+            int[] oldHashes = hashes;
+            nodes = new Object[oldNodes.length * 2];
+            hashes = new int[oldNodes.length * 2];
+            int mask = nodes.length - 1;
+            for (int i = 0; i < oldNodes.length; i++) {
+                if (oldNodes[i] != null) {
+                    int slot = oldHashes[i] & mask;
+                    while (nodes[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    nodes[slot] = oldNodes[i];
+                    hashes[slot] = oldHashes[i];
+                }
+            }
+        }
+    }
+
+    /* * * * * AVL Helpers * * * * */
+
+    /**
+     * Return the height of a subtree, -1 for an empty one
+     *
+     * @param node Subtree root
+     * @return The height of the subtree
+     */
+    private int height(BSTNode node) {
+        return node == null ? -1 : node.height;
+    }
+
+    /**
+     * Return the number of keys in a subtree, 0 for an empty one
+     *
+     * @param node Subtree root
+     * @return The size of the subtree
+     */
+    private int size(BSTNode node) {
+        return node == null ? 0 : node.size;
+    }
+
+    /**
+     * Recompute the height and size of a node from its children
+     *
+     * @param node Node to update
+     */
+    private void update(BSTNode node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+        node.size = 1 + size(node.left) + size(node.right);
+    }
+
+    /**
+     * Rotate a subtree to the left and return its new root
+     *
+     * @param node Subtree root
+     * @return The new subtree root
+     */
+    private BSTNode rotateLeft(BSTNode node) {
+        BSTNode pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    /**
+     * Rotate a subtree to the right and return its new root
+     *
+     * @param node Subtree root
+     * @return The new subtree root
+     */
+    private BSTNode rotateRight(BSTNode node) {
+        BSTNode pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    /**
+     * Restore the AVL property at a node whose children are balanced
+     *
+     * @param node Subtree root with an up-to-date height
+     * @return The new subtree root
+     */
+    private BSTNode rebalance(BSTNode node) {
+        int balance = height(node.left) - height(node.right);
+        if (balance > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
         }
-        
         return node;
     }
+
     /**
      * Return true if the 'key' is found in the tree, false otherwise
      *
@@ -214,26 +608,14 @@ public class BSTree<T extends Comparable<? super T>> implements Iterable {
      * @return True if the 'key' is found, false otherwise
      * @throws NullPointerException If key is null
      */
+    @Override
     public boolean findKey(T key) {
         if (key == null) {
             throw new NullPointerException("Key cannot be null");
         }
-        return findHelper(root, key);
-    }
-    private boolean findHelper(BSTNode node, T key) {
-        if (node == null) {
-            return false;
-        }
-        
-        int compare = key.compareTo(node.key);
-        if (compare < 0) {
-            return findHelper(node.left, key);
-        } else if (compare > 0) {
-            return findHelper(node.right, key);
-        } else {
-            return true;
-        }
+        return findNode(key) != null;
     }
+
     /**
      * Insert 'data' into the LinkedList of the node whose key is 'key'
      *
@@ -247,27 +629,139 @@ public class BSTree<T extends Comparable<? super T>> implements Iterable {
             throw new NullPointerException("Both key and data must be non-null");
         }
         
-        BSTNode node = findNode(root, key);
+        BSTNode node = findNode(key);
         if (node != null) {
             node.addNewInfo(data);
+            version++;
         } else {
             throw new IllegalArgumentException("Key not found in the tree");
         }
     }
 
-    private BSTNode findNode(BSTNode node, T key) {
+    /**
+     * Remove 'data' from the LinkedList of the node whose key is 'key'. The
+     * key is removed from the tree once its list becomes empty.
+     *
+     * @param key  Target key
+     * @param data To be removed from key's LinkedList
+     * @return True if data was found and removed, false otherwise
+     * @throws NullPointerException If either key or data is null
+     */
+    @Override
+    public boolean removeData(T key, T data) {
+        if (key == null || data == null) {
+            throw new NullPointerException("Both key and data must be non-null");
+        }
+
+        BSTNode node = findNode(key);
+        if (node == null || !node.removeInfo(data)) {
+            return false;
+        }
+        version++;
+        if (node.dataSize() == 0) {
+            remove(key);
+        }
+        return true;
+    }
+
+    /**
+     * Remove 'key' and its LinkedList from the tree. A node with two children
+     * takes over the key and list of its in-order successor, which is
+     * unlinked instead.
+     *
+     * @param key Key to remove
+     * @return True if the key was found and removed, false otherwise
+     * @throws NullPointerException If key is null
+     */
+    public boolean remove(T key) {
+        if (key == null) {
+            throw new NullPointerException("Key cannot be null");
+        }
+
+        BSTNode node = root;
+        while (node != null) {
+            int compare = key.compareTo(node.key);
+            if (compare == 0) {
+                break;
+            }
+            path.add(node);
+            node = compare < 0 ? node.left : node.right;
+        }
         if (node == null) {
-            return null;
+            path.clear();
+            return false;
         }
-        
-        int compare = key.compareTo(node.key);
-        if (compare < 0) {
-            return findNode(node.left, key);
-        } else if (compare > 0) {
-            return findNode(node.right, key);
-        } else {
-            return node;
+
+        if (hashIndex != null) {
+            hashIndex.remove(key);
+        }
+        if (node.left != null && node.right != null) {
+            path.add(node);
+            BSTNode successor = node.right;
+            while (successor.left != null) {
+                path.add(successor);
+                successor = successor.left;
+            }
+            node.key = successor.key;
+            node.dataList = successor.dataList;
+            node.postings = successor.postings;
+            if (hashIndex != null) {
+                hashIndex.put(node.key, node);
+            }
+            node = successor;
+        }
+
+        // node has at most one child now, which takes its place
+        BSTNode child = node.left != null ? node.left : node.right;
+        replaceChild(path.isEmpty() ? null : path.get(path.size() - 1), node, child);
+        nelems--;
+        modCount++;
+        version++;
+        retrace();
+        return true;
+    }
+
+    /**
+     * Return the node whose key is 'key', or null if there is none
+     *
+     * @param key Target key
+     * @return The node holding key, null if not found
+     */
+    private BSTNode findNode(T key) {
+        if (hashIndex != null) {
+            return hashIndex.get(key);
+        }
+        BSTNode node = root;
+        while (node != null) {
+            int compare = key.compareTo(node.key);
+            if (compare == 0) {
+                return node;
+            }
+            node = compare < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    /**
+     * Insert 'key' if it is not in the tree yet and append 'data' to its
+     * LinkedList. Does the work of findKey, insert and insertData in a single
+     * walk down the tree.
+     *
+     * @param key  Target key
+     * @param data To be added to key's LinkedList
+     * @return True if the key was newly inserted, false if it already existed
+     * @throws NullPointerException If either key or data is null
+     */
+    @Override
+    public boolean insertOrAppend(T key, T data) {
+        if (key == null || data == null) {
+            throw new NullPointerException("Both key and data must be non-null");
         }
+
+        int oldSize = nelems;
+        insertHelper(key).addNewInfo(data);
+        version++;
+        return nelems != oldSize;
     }
 
     /**
@@ -278,12 +772,13 @@ public class BSTree<T extends Comparable<? super T>> implements Iterable {
      * @throws NullPointerException     If key is null
      * @throws IllegalArgumentException If key is not found in the BST
      */
+    @Override
     public LinkedList<T> findDataList(T key) {
         if (key == null) {
             throw new NullPointerException("Key cannot be null");
         }
         
-        BSTNode node = findNode(root, key);
+        BSTNode node = findNode(key);
         if (node != null) {
             return node.getDataList();
         } else {
@@ -291,67 +786,316 @@ public class BSTree<T extends Comparable<? super T>> implements Iterable {
         }
     }
 
+    /**
+     * Return the PostingList of the node with key value 'key'. The list is
+     * the node's own list and must not be modified by the caller.
+     *
+     * @param key Target key
+     * @return PostingList of the node whose key value is 'key'
+     * @throws NullPointerException     If key is null
+     * @throws IllegalArgumentException If key is not found in the BST
+     * @throws IllegalStateException    If the tree is not in posting-list mode
+     */
+    @Override
+    public PostingList findPostings(T key) {
+        if (key == null) {
+            throw new NullPointerException("Key cannot be null");
+        }
+        if (documents == null) {
+            throw new IllegalStateException("Tree is not in posting-list mode");
+        }
+
+        BSTNode node = findNode(key);
+        if (node != null) {
+            return node.postings;
+        } else {
+            throw new IllegalArgumentException("Key not found in the tree");
+        }
+    }
+
+    /**
+     * Return a frozen, read-only copy of the tree with array-backed postings.
+     * Later changes to the tree do not show up in the snapshot. For a tree in
+     * plain LinkedList mode the data is interned into a new DocumentTable.
+     *
+     * @return A read-only snapshot of the tree
+     */
+    public BSTSnapshot<T> freeze() {
+        DocumentTable<T> table = documents != null ? documents : new DocumentTable<>();
+        ArrayList<T> keys = new ArrayList<>(nelems);
+        PostingList[] frozen = new PostingList[nelems];
+        BSTree_Iterator iterator = new BSTree_Iterator();
+        while (iterator.hasNext()) {
+            BSTNode node = iterator.nextNode();
+            PostingList postings = node.postings;
+            if (postings == null) {
+                postings = new PostingList();
+                for (T data : node.dataList) {
+                    postings.add(table.intern(data));
+                }
+            }
+            frozen[keys.size()] = PostingList.readOnly(postings.toArray());
+            keys.add(node.key);
+        }
+        return new BSTSnapshot<>(keys, frozen, table);
+    }
+
     /**
      * Return the height of the tree
      *
      * @return The height of the tree, -1 if BST is empty
      */
     public int findHeight() {
-        return findHeightHelper(root);
+        // every insert and remove keeps node heights up to date on the way back up
+        return height(root);
     }
 
+    /* * * * * Ordered Queries * * * * */
+
     /**
-     * Helper for the findHeight method
+     * Return the greatest key less than or equal to 'key'
      *
-     * @param root Root node
-     * @return int The height of the tree, -1 if BST is empty
+     * @param key Target key
+     * @return The floor of key, null if every key is greater
+     * @throws NullPointerException If key is null
      */
-    private int findHeightHelper(BSTNode root) {
-        if (root == null) {
-            return -1;
+    public T floor(T key) {
+        if (key == null) {
+            throw new NullPointerException("Key cannot be null");
         }
-        
-        return 1 + Math.max(findHeightHelper(root.left), findHeightHelper(root.right));
+
+        T floor = null;
+        BSTNode node = root;
+        while (node != null) {
+            int compare = key.compareTo(node.key);
+            if (compare == 0) {
+                return node.key;
+            }
+            if (compare > 0) {
+                floor = node.key;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return floor;
+    }
+
+    /**
+     * Return the least key greater than or equal to 'key'
+     *
+     * @param key Target key
+     * @return The ceiling of key, null if every key is smaller
+     * @throws NullPointerException If key is null
+     */
+    public T ceiling(T key) {
+        if (key == null) {
+            throw new NullPointerException("Key cannot be null");
+        }
+
+        T ceiling = null;
+        BSTNode node = root;
+        while (node != null) {
+            int compare = key.compareTo(node.key);
+            if (compare == 0) {
+                return node.key;
+            }
+            if (compare < 0) {
+                ceiling = node.key;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return ceiling;
+    }
+
+    /**
+     * Return the k-th smallest key, counting from 0. Pages of sorted keys
+     * start at range(select(offset), null).
+     *
+     * @param k Position of the key in ascending order
+     * @return The key at position k
+     * @throws IndexOutOfBoundsException If k is not in [0, getSize())
+     */
+    public T select(int k) {
+        Objects.checkIndex(k, nelems);
+        BSTNode node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (k < leftSize) {
+                node = node.left;
+            } else if (k > leftSize) {
+                k -= leftSize + 1;
+                node = node.right;
+            } else {
+                return node.key;
+            }
+        }
+    }
+
+    /**
+     * Return the number of keys less than 'key'. The key itself does not
+     * have to be in the tree.
+     *
+     * @param key Target key
+     * @return The number of smaller keys
+     * @throws NullPointerException If key is null
+     */
+    public int rank(T key) {
+        if (key == null) {
+            throw new NullPointerException("Key cannot be null");
+        }
+
+        int rank = 0;
+        BSTNode node = root;
+        while (node != null) {
+            int compare = key.compareTo(node.key);
+            if (compare <= 0) {
+                if (compare == 0) {
+                    return rank + size(node.left);
+                }
+                node = node.left;
+            } else {
+                rank += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Return the number of keys from 'lo' (inclusive) to 'hi' (exclusive),
+     * the keys range(lo, hi) would return, in O(log n)
+     *
+     * @param lo Smallest key to count, null for no lower bound
+     * @param hi Stop before this key, null for no upper bound
+     * @return The number of keys in range
+     */
+    public int countRange(T lo, T hi) {
+        int from = lo == null ? 0 : rank(lo);
+        int to = hi == null ? nelems : rank(hi);
+        return Math.max(0, to - from);
+    }
+
+    /**
+     * Return an iterator over the keys from 'lo' (inclusive) to 'hi'
+     * (exclusive) in ascending order. Costs O(log n + k) for k keys on a
+     * balanced tree.
+     *
+     * @param lo Smallest key to return, null for no lower bound
+     * @param hi Stop before this key, null for no upper bound
+     * @return Iterator over the keys in range
+     */
+    @Override
+    public Iterator<T> range(T lo, T hi) {
+        return new BSTree_Iterator(lo, hi);
+    }
+
+    /**
+     * Return an iterator over the keys less than 'hi', in ascending order
+     *
+     * @param hi Stop before this key
+     * @return Iterator over the keys less than hi
+     * @throws NullPointerException If hi is null
+     */
+    public Iterator<T> headSet(T hi) {
+        return range(null, Objects.requireNonNull(hi, "Key cannot be null"));
+    }
+
+    /**
+     * Return an iterator over the keys greater than or equal to 'lo', in
+     * ascending order
+     *
+     * @param lo Smallest key to return
+     * @return Iterator over the keys from lo on
+     * @throws NullPointerException If lo is null
+     */
+    public Iterator<T> tailSet(T lo) {
+        return range(Objects.requireNonNull(lo, "Key cannot be null"), null);
     }
 
     /* * * * * BST Iterator * * * * */
 
+    /**
+     * In-order iterator over the keys. Nodes still to visit are kept on an
+     * unsynchronized array stack, which never holds more than height + 1
+     * nodes. Fails fast with a ConcurrentModificationException if keys are
+     * added or removed while iterating.
+     */
     public class BSTree_Iterator implements Iterator<T> {
-        // stack of nodes
-        private Stack<BSTNode> stack;
+        // stack of nodes, top at the end
+        private final ArrayList<BSTNode> stack;
+        private final T hi; // stop before this key, null for no bound
+        private final int expectedModCount; // modCount when the iterator was made
 
         public BSTree_Iterator() {
-            stack = new Stack<>();
-            populateStack(root);
+            this(null, null);
+        }
+
+        /**
+         * Iterator over the keys in [lo, hi). Only the path down to lo is
+         * pushed, so getting started costs O(log n) on a balanced tree.
+         *
+         * @param lo Smallest key to return, null for no bound
+         * @param hi Stop before this key, null for no bound
+         */
+        BSTree_Iterator(T lo, T hi) {
+            stack = new ArrayList<>(height(root) + 1);
+            this.hi = hi;
+            expectedModCount = modCount;
+            BSTNode node = root;
+            while (node != null) {
+                if (lo == null || node.key.compareTo(lo) >= 0) {
+                    stack.add(node);
+                    node = node.getLeft();
+                } else {
+                    node = node.getRight();
+                }
+            }
         }
 
 
         private void populateStack(BSTNode node) {
             while (node != null) {
-                stack.push(node);
+                stack.add(node);
                 node = node.getLeft();
             }
         }
 
-        // where were these methods used earlier
         @Override
         public boolean hasNext() {
-            return !stack.isEmpty();
+            return !stack.isEmpty()
+                    && (hi == null || stack.get(stack.size() - 1).key.compareTo(hi) < 0);
         }
 
+        @Override
         public T next() {
+            return nextNode().getKey();
+        }
+
+        /**
+         * Return the next node in key order
+         *
+         * @return The next node
+         * @throws NoSuchElementException          If there are no more nodes
+         * @throws ConcurrentModificationException If the tree's keys changed
+         */
+        private BSTNode nextNode() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
             if (!hasNext()) {
                 throw new java.util.NoSuchElementException();
             }
 
-            BSTNode currentNode = stack.pop();
-            T result = currentNode.getKey();
+            BSTNode currentNode = stack.remove(stack.size() - 1);
 
             if (currentNode.getRight() != null) {
                 populateStack(currentNode.getRight());
             }
 
-            return result;
+            return currentNode;
         }
     }
 
@@ -360,60 +1104,220 @@ public class BSTree<T extends Comparable<? super T>> implements Iterable {
         return new BSTree_Iterator();
     }
 
-    /* * * * * Extra Credit Methods * * * * */
+    /**
+     * Return a Spliterator over the keys in ascending order. It splits by
+     * rank using the subtree sizes, so every half knows its exact size and
+     * starts with an O(log n) walk down to its first key.
+     *
+     * @return Key Spliterator
+     */
+    @Override
+    public Spliterator<T> spliterator() {
+        return new KeySpliterator(0, nelems);
+    }
 
-    public ArrayList<T> intersection(Iterator<T> iter1, Iterator<T> iter2) {
-        ArrayList<T> result = new ArrayList<>();
+    /**
+     * Return a sequential Stream over the keys in ascending order; call
+     * parallel() on it to spread the keys over several threads
+     *
+     * @return Stream of keys
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
 
-        while (iter1.hasNext() && iter2.hasNext()) {
-            T elem1 = iter1.next();
-            T elem2 = iter2.next();
+    /**
+     * Spliterator over the keys with ranks in [from, to). Splits in half by
+     * rank until traversal starts.
+     */
+    private class KeySpliterator implements Spliterator<T> {
+        private int from; // rank of the next key
+        private final int to; // rank to stop before
+        private final int expectedModCount; // modCount when the spliterator was made
+        private BSTree_Iterator keys; // created on the first advance
 
-            int compare = elem1.compareTo(elem2);
-            if (compare == 0) {
-                result.add(elem1);
-            } else if (compare < 0) {
-                iter1.next();
-            } else {
-                iter2.next();
+        KeySpliterator(int from, int to) {
+            this.from = from;
+            this.to = to;
+            expectedModCount = modCount;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
             }
+            if (from >= to) {
+                return false;
+            }
+            if (keys == null) {
+                keys = new BSTree_Iterator(select(from), null);
+            }
+            from++;
+            action.accept(keys.next());
+            return true;
         }
 
-        return result;
+        @Override
+        public Spliterator<T> trySplit() {
+            if (keys != null || to - from < 2) {
+                return null;
+            }
+            int middle = (from + to) >>> 1;
+            KeySpliterator prefix = new KeySpliterator(from, middle);
+            from = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | DISTINCT | SORTED | NONNULL | SIZED | SUBSIZED;
+        }
+
+        @Override
+        public Comparator<? super T> getComparator() {
+            return null; // natural order
+        }
     }
 
-    public T levelMax(int level) {
-        if (level < 0) {
-            return null;
+    /* * * * * Extra Credit Methods * * * * */
+
+    /**
+     * Return the elements present in both sorted iterators
+     *
+     * @param iter1 First iterator, in ascending order
+     * @param iter2 Second iterator, in ascending order
+     * @return The common elements, in ascending order
+     */
+    public ArrayList<T> intersection(Iterator<T> iter1, Iterator<T> iter2) {
+        ArrayList<T> result = new ArrayList<>();
+        Iterator<T> common = intersection(Arrays.asList(iter1, iter2));
+        while (common.hasNext()) {
+            result.add(common.next());
         }
+        return result;
+    }
 
-        ArrayList<T> nodesAtLevel = new ArrayList<>();
-        traverseLevel(root, level, 0, nodesAtLevel);
+    /**
+     * Return a lazy iterator over the elements present in every one of the
+     * sorted iterators. Elements are merge-joined on demand, so nothing is
+     * materialized and callers can stop early.
+     *
+     * @param iterators Iterators to intersect, each in ascending order
+     * @return Iterator over the common elements, in ascending order
+     */
+    public Iterator<T> intersection(List<? extends Iterator<T>> iterators) {
+        return new IntersectionIterator(iterators);
+    }
 
-        if (nodesAtLevel.isEmpty()) {
-            return null;
+    /**
+     * Merge-join over several sorted iterators. Keeps the current head of each
+     * iterator and advances the lagging ones until all heads agree.
+     */
+    private class IntersectionIterator implements Iterator<T> {
+        private final List<? extends Iterator<T>> iterators;
+        private final ArrayList<T> heads; // current element of each iterator
+        private T pending; // next common element, null if not found yet
+        private boolean exhausted; // some iterator has run out
+
+        IntersectionIterator(List<? extends Iterator<T>> iterators) {
+            this.iterators = iterators;
+            heads = new ArrayList<>(iterators.size());
+            exhausted = iterators.isEmpty();
+            for (Iterator<T> iterator : iterators) {
+                if (!iterator.hasNext()) {
+                    exhausted = true;
+                    break;
+                }
+                heads.add(iterator.next());
+            }
         }
 
-        T max = nodesAtLevel.get(0);
-        for (T node : nodesAtLevel) {
-            if (node.compareTo(max) > 0) {
-                max = node;
+        /**
+         * Find the next common element, if any, and store it in pending
+         */
+        private void advance() {
+            if (pending != null || exhausted) {
+                return;
+            }
+
+            T max = heads.get(0);
+            boolean aligned = false;
+            while (!aligned) {
+                aligned = true;
+                for (int i = 0; i < heads.size(); i++) {
+                    Iterator<T> iterator = iterators.get(i);
+                    T head = heads.get(i);
+                    while (head.compareTo(max) < 0) {
+                        if (!iterator.hasNext()) {
+                            exhausted = true;
+                            return;
+                        }
+                        head = iterator.next();
+                    }
+                    heads.set(i, head);
+                    if (head.compareTo(max) > 0) {
+                        max = head;
+                        aligned = false;
+                    }
+                }
+            }
+
+            pending = max;
+            for (int i = 0; i < heads.size(); i++) {
+                Iterator<T> iterator = iterators.get(i);
+                if (!iterator.hasNext()) {
+                    exhausted = true;
+                    return;
+                }
+                heads.set(i, iterator.next());
             }
         }
 
-        return max;
+        @Override
+        public boolean hasNext() {
+            advance();
+            return pending != null;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            T result = pending;
+            pending = null;
+            return result;
+        }
     }
 
-    private void traverseLevel (BSTNode node, int targetLevel, int currentLevel, ArrayList<T> nodesAtLevel) {
-        if (node == null) {
-            return;
+    public T levelMax(int level) {
+        if (level < 0 || level > height(root)) {
+            return null;
         }
 
-        if (currentLevel == targetLevel) {
-            nodesAtLevel.add(node.getKey());
-        } else {
-            traverseLevel(node.getLeft(), targetLevel, currentLevel + 1, nodesAtLevel);
-            traverseLevel(node.getRight(), targetLevel, currentLevel + 1, nodesAtLevel);
+        // keys grow from left to right on every level, so the max is the
+        // rightmost node there; heights tell which child reaches that deep
+        BSTNode node = root;
+        for (int depth = 0; depth < level; depth++) {
+            int remaining = level - depth - 1;
+            node = height(node.right) >= remaining ? node.right : node.left;
         }
+        return node.getKey();
+    }
+
+    /**
+     * Compute height, size, per-level key counts and min/max and a histogram
+     * of list lengths in one parallel pass (see TreeStats)
+     *
+     * @return Statistics of the tree
+     */
+    public TreeStats<T> stats() {
+        return TreeStats.of(this);
     }
 }
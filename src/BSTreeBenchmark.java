@@ -0,0 +1,787 @@
+/*
+ * Name: Felix Najera
+ * PID:  A17618969
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Simple wall-clock benchmarks for BSTree. Run with
+ * {@code java BSTreeBenchmark} after compiling the sources.
+ *
+ * @author Felix Najera
+ * @since  8/27/24
+ */
+public class BSTreeBenchmark {
+
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int ROUNDS = 5;
+
+    /**
+     * Run a task a few times and return the best time in milliseconds
+     *
+     * @param task Task to time
+     * @return Best time in milliseconds
+     */
+    private static double time(Runnable task) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            task.run();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            task.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / 1e6;
+    }
+
+    /**
+     * Print one benchmark line
+     *
+     * @param name   Benchmark name
+     * @param millis Time in milliseconds
+     */
+    private static void report(String name, double millis) {
+        System.out.printf("%-45s %10.2f ms%n", name, millis);
+    }
+
+    /**
+     * Build a tree from sorted keys and look every key up again
+     *
+     * @param balanced True to use the AVL-balanced tree
+     * @param n        Number of keys
+     * @return The built tree
+     */
+    private static BSTree<Integer> sortedInsertAndFind(boolean balanced, int n) {
+        BSTree<Integer> tree = new BSTree<>(balanced);
+        for (int i = 0; i < n; i++) {
+            tree.insert(i);
+        }
+        for (int i = 0; i < n; i++) {
+            tree.findKey(i);
+        }
+        return tree;
+    }
+
+    /**
+     * Sorted input: plain vs balanced insertion and lookup
+     */
+    private static void benchmarkSortedInput() {
+        // the plain tree degenerates into a list (O(n) per insert), so keep
+        // n small enough to finish quickly
+        int n = 5000;
+        report("sorted insert+find, plain    (n=" + n + ")",
+                time(() -> sortedInsertAndFind(false, n)));
+        report("sorted insert+find, balanced (n=" + n + ")",
+                time(() -> sortedInsertAndFind(true, n)));
+        System.out.println("  height plain = " + sortedInsertAndFind(false, n).findHeight()
+                + ", balanced = " + sortedInsertAndFind(true, n).findHeight());
+    }
+
+    /**
+     * Read moviedata.txt and repeat it 'copies' times, suffixing titles and
+     * actors with the copy number so the trees grow with the copies. Each
+     * record is {title, cast..., studios..., rating} split into token arrays.
+     *
+     * @param fileName Movie data file
+     * @param copies   Number of copies
+     * @return Parsed records
+     * @throws IOException If the file cannot be read
+     */
+    private static List<String[][]> scaledMovieData(String fileName, int copies)
+            throws IOException {
+        List<String> lines = Files.readAllLines(Paths.get(fileName));
+        List<String[][]> records = new ArrayList<>();
+        for (int copy = 0; copy < copies; copy++) {
+            for (int i = 0; i + 4 < lines.size(); i += 5) {
+                String[] cast = lines.get(i + 1).toLowerCase().split(" ");
+                for (int j = 0; j < cast.length; j++) {
+                    cast[j] = cast[j] + "-" + copy;
+                }
+                records.add(new String[][] {
+                    {lines.get(i).trim() + "-" + copy},
+                    cast,
+                    lines.get(i + 2).toLowerCase().split(" "),
+                    {lines.get(i + 3).trim().toLowerCase()}
+                });
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Index records the old way: findKey, insert, then insertData per token
+     *
+     * @param records Parsed records
+     */
+    private static void ingestTripleWalk(List<String[][]> records) {
+        List<BSTree<String>> trees = Arrays.asList(
+                new BSTree<>(true), new BSTree<>(true), new BSTree<>(true));
+        for (String[][] record : records) {
+            String movie = record[0][0];
+            for (int field = 1; field <= 3; field++) {
+                BSTree<String> tree = trees.get(field - 1);
+                for (String key : record[field]) {
+                    if (!tree.findKey(key)) {
+                        tree.insert(key);
+                    }
+                    tree.insertData(key, movie);
+                }
+            }
+        }
+    }
+
+    /**
+     * Index records with a single insertOrAppend per token
+     *
+     * @param records Parsed records
+     */
+    private static void ingestSingleWalk(List<String[][]> records) {
+        List<BSTree<String>> trees = Arrays.asList(
+                new BSTree<>(true), new BSTree<>(true), new BSTree<>(true));
+        for (String[][] record : records) {
+            String movie = record[0][0];
+            for (int field = 1; field <= 3; field++) {
+                BSTree<String> tree = trees.get(field - 1);
+                for (String key : record[field]) {
+                    tree.insertOrAppend(key, movie);
+                }
+            }
+        }
+    }
+
+    /**
+     * Ingest of moviedata.txt scaled up 1000x
+     *
+     * @param fileName Movie data file
+     * @throws IOException If the file cannot be read
+     */
+    private static void benchmarkIngest(String fileName) throws IOException {
+        List<String[][]> records = scaledMovieData(fileName, 1000);
+        report("ingest x1000, findKey+insert+insertData",
+                time(() -> ingestTripleWalk(records)));
+        report("ingest x1000, insertOrAppend",
+                time(() -> ingestSingleWalk(records)));
+    }
+
+    /**
+     * Return the heap in use after a garbage collection
+     *
+     * @return Used heap in bytes
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Heap used by LinkedList vs posting-list storage for 'postings'
+     * postings spread over 'postings / 100' keys and 'postings / 20' titles
+     *
+     * @param postings Number of (key, title) postings
+     */
+    private static void benchmarkPostingMemory(int postings) {
+        int keys = postings / 100;
+        int titles = postings / 20;
+        String[] titleNames = new String[titles];
+        for (int i = 0; i < titles; i++) {
+            titleNames[i] = "movie-" + i;
+        }
+        String[] keyNames = new String[keys];
+        for (int i = 0; i < keys; i++) {
+            keyNames[i] = "actor-" + i;
+        }
+
+        for (boolean postingMode : new boolean[] {false, true}) {
+            long before = usedHeap();
+            BSTree<String> tree = postingMode
+                    ? new BSTree<String>(true, new DocumentTable<>())
+                    : new BSTree<String>(true);
+            Random random = new Random(42);
+            for (int i = 0; i < postings; i++) {
+                tree.insertOrAppend(keyNames[random.nextInt(keys)],
+                        titleNames[random.nextInt(titles)]);
+            }
+            long bytes = usedHeap() - before;
+            System.out.printf("%-45s %10.1f MB (%.1f bytes/posting)%n",
+                    "heap, " + (postingMode ? "posting lists" : "LinkedLists")
+                            + " (" + postings + " postings)",
+                    bytes / 1e6, (double) bytes / postings);
+            tree.getSize(); // keep the tree reachable until measured
+        }
+    }
+
+    /**
+     * BSTree against RadixIndex on the actor keys of moviedata.txt scaled up
+     * 1000x ("emma-stone-0" ... "emma-stone-999"): heap used, exact lookups
+     * of every key and prefix queries
+     *
+     * @param fileName Movie data file
+     * @throws IOException If the file cannot be read
+     */
+    private static void benchmarkRadixIndex(String fileName) throws IOException {
+        List<String[][]> records = scaledMovieData(fileName, 1000);
+        Set<String> distinct = new TreeSet<>();
+        for (String[][] record : records) {
+            distinct.addAll(Arrays.asList(record[1]));
+        }
+        String[] keys = distinct.toArray(new String[0]);
+        Collections.shuffle(Arrays.asList(keys), new Random(23));
+        String[] prefixes = new String[1000];
+        for (int i = 0; i < prefixes.length; i++) {
+            String key = keys[i % keys.length];
+            prefixes[i] = key.substring(0, Math.min(key.length(), 1 + i % 8));
+        }
+
+        // build both first so neither heap figure includes leftovers of the other
+        long before = usedHeap();
+        UpdatableIndex<String> tree =
+                actorIndex(records, new BSTree<String>(true, new DocumentTable<>()));
+        long treeBytes = usedHeap() - before;
+        before = usedHeap();
+        UpdatableIndex<String> radix =
+                actorIndex(records, new RadixIndex(new DocumentTable<>()));
+        long radixBytes = usedHeap() - before;
+
+        for (UpdatableIndex<String> index : Arrays.asList(tree, radix)) {
+            String name = index.getClass().getSimpleName();
+            System.out.printf("%-45s %10.1f MB (%d keys)%n", "heap, " + name + " x1000",
+                    (index == tree ? treeBytes : radixBytes) / 1e6, index.getSize());
+            report("findKey, every key, " + name + " (n=" + keys.length + ")", time(() -> {
+                for (String key : keys) {
+                    index.findKey(key);
+                }
+            }));
+            report("prefix x1000, " + name, time(() -> {
+                for (String prefix : prefixes) {
+                    Iterator<String> matches = SearchEngine.prefix(index, prefix);
+                    while (matches.hasNext()) {
+                        matches.next();
+                    }
+                }
+            }));
+        }
+    }
+
+    /**
+     * Fill an empty index with the actors of scaled movie records
+     *
+     * @param records Parsed records
+     * @param index   Index to fill
+     * @return The index
+     */
+    private static UpdatableIndex<String> actorIndex(
+            List<String[][]> records, UpdatableIndex<String> index) {
+        for (String[][] record : records) {
+            for (String key : record[1]) {
+                // copy, so the index owns its keys
+                index.insertOrAppend(new String(key), record[0][0]);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Multi-term intersection: LinkedList.retainAll vs galloping merge over
+     * sorted posting lists, for 2 to 10 terms
+     *
+     * @param listSize Number of ids per term
+     */
+    private static void benchmarkIntersection(int listSize) {
+        Random random = new Random(42);
+        int universe = listSize * 4;
+        for (int terms = 2; terms <= 10; terms += 4) {
+            List<LinkedList<Integer>> linkedLists = new ArrayList<>();
+            List<PostingList> postingLists = new ArrayList<>();
+            for (int t = 0; t < terms; t++) {
+                PostingList postings = new PostingList();
+                while (postings.size() < listSize) {
+                    postings.add(random.nextInt(universe));
+                }
+                LinkedList<Integer> linked = new LinkedList<>();
+                for (int i = 0; i < postings.size(); i++) {
+                    linked.add(postings.get(i));
+                }
+                Collections.shuffle(linked, random);
+                postingLists.add(postings);
+                linkedLists.add(linked);
+            }
+
+            int termCount = terms;
+            report("intersect " + terms + " terms, retainAll (n=" + listSize + ")",
+                    time(() -> {
+                        LinkedList<Integer> common = new LinkedList<>(linkedLists.get(0));
+                        for (int t = 1; t < termCount; t++) {
+                            common.retainAll(linkedLists.get(t));
+                        }
+                    }));
+            report("intersect " + terms + " terms, galloping (n=" + listSize + ")",
+                    time(() -> PostingList.intersect(postingLists)));
+        }
+    }
+
+    /**
+     * Intersection of two tree iterators: collected ArrayList vs the lazy
+     * merge-join, fully drained and stopped after the first 10 matches
+     *
+     * @param n Number of keys per tree
+     */
+    private static void benchmarkIteratorIntersection(int n) {
+        BSTree<Integer> evens = new BSTree<>(true);
+        BSTree<Integer> triples = new BSTree<>(true);
+        for (int i = 0; i < n; i++) {
+            evens.insert(i * 2);
+            triples.insert(i * 3);
+        }
+
+        report("iterator intersection, ArrayList (n=" + n + ")",
+                time(() -> evens.intersection(evens.iterator(), triples.iterator())));
+        report("iterator intersection, lazy drain (n=" + n + ")",
+                time(() -> {
+                    Iterator<Integer> common = evens.intersection(
+                            Arrays.asList(evens.iterator(), triples.iterator()));
+                    while (common.hasNext()) {
+                        common.next();
+                    }
+                }));
+        report("iterator intersection, lazy first 10 (n=" + n + ")",
+                time(() -> {
+                    Iterator<Integer> common = evens.intersection(
+                            Arrays.asList(evens.iterator(), triples.iterator()));
+                    for (int i = 0; i < 10 && common.hasNext(); i++) {
+                        common.next();
+                    }
+                }));
+    }
+
+    /**
+     * Order statistics: select(k) and countRange against skipping through
+     * the in-order iterator
+     *
+     * @param n Number of keys
+     */
+    private static void benchmarkOrderStatistics(int n) {
+        BSTree<Integer> tree = new BSTree<>(true);
+        for (int i = 0; i < n; i++) {
+            tree.insert(i * 2);
+        }
+        int[] positions = new Random(16).ints(100, 0, n).toArray();
+
+        report("select x100, iterator skip (n=" + n + ")", time(() -> {
+            for (int k : positions) {
+                Iterator<?> keys = tree.iterator();
+                for (int i = 0; i < k; i++) {
+                    keys.next();
+                }
+                keys.next();
+            }
+        }));
+        report("select x100, subtree sizes (n=" + n + ")", time(() -> {
+            for (int k : positions) {
+                tree.select(k);
+            }
+        }));
+        report("countRange x100, range iteration (n=" + n + ")", time(() -> {
+            for (int k : positions) {
+                Iterator<Integer> keys = tree.range(k, k + n / 2);
+                int count = 0;
+                while (keys.hasNext()) {
+                    keys.next();
+                    count++;
+                }
+            }
+        }));
+        report("countRange x100, subtree sizes (n=" + n + ")", time(() -> {
+            for (int k : positions) {
+                tree.countRange(k, k + n / 2);
+            }
+        }));
+    }
+
+    /**
+     * Exact-match lookups of random string keys, half of them present,
+     * walking the tree against the hash index
+     *
+     * @param n Number of keys
+     */
+    private static void benchmarkHashedLookups(int n) {
+        BSTree<String> plain = new BSTree<>(true);
+        BSTree<String> hashed = new BSTree<>(true, null, true);
+        Random random = new Random(22);
+        for (int i = 0; i < n; i++) {
+            String key = "key-" + random.nextInt(4 * n);
+            plain.insert(key);
+            hashed.insert(key);
+        }
+        String[] probes = new String[n];
+        for (int i = 0; i < n; i++) {
+            probes[i] = "key-" + random.nextInt(2 * n) * 2;
+        }
+
+        report("findKey x" + n + ", tree walk (n=" + n + ")", time(() -> {
+            for (String probe : probes) {
+                plain.findKey(probe);
+            }
+        }));
+        report("findKey x" + n + ", hash index (n=" + n + ")", time(() -> {
+            for (String probe : probes) {
+                hashed.findKey(probe);
+            }
+        }));
+    }
+
+    /**
+     * The rating "pg13" on moviedata.txt scaled up 'copies' times: the full
+     * sorted result against ranked pages of 10 at offsets 0 and 1000
+     *
+     * @param fileName Movie data file
+     * @param copies   Number of copies
+     * @throws IOException If the file cannot be read
+     */
+    private static void benchmarkTopK(String fileName, int copies) throws IOException {
+        BSTree<String> ratingTree = new BSTree<String>(true, new DocumentTable<String>());
+        for (String[][] record : scaledMovieData(fileName, copies)) {
+            ratingTree.insertOrAppend(record[3][0], record[0][0]);
+        }
+        int matches = ratingTree.findPostings("pg13").size();
+
+        report("pg13, full sorted result (" + matches + " matches)", time(() ->
+                SearchEngine.evaluateQuery(ratingTree, "pg13", null)));
+        for (int offset : new int[] {0, 1000}) {
+            report("pg13, top 10 at offset " + offset + " (" + matches + " matches)", time(() ->
+                    SearchEngine.rankQuery(ratingTree, "pg13", null, offset, 10)));
+        }
+    }
+
+    /**
+     * Fuzzy lookups (two edits) of misspelled keys: the pruned FuzzySearch
+     * walk against computing the edit distance to every key
+     *
+     * @param n Number of keys
+     */
+    private static void benchmarkFuzzy(int n) {
+        Random random = new Random(24);
+        BSTree<String> tree = new BSTree<>(true);
+        List<String> keys = new ArrayList<>();
+        while (tree.getSize() < n) {
+            String key = randomName(random, 4 + random.nextInt(4)) + "-"
+                    + randomName(random, 5 + random.nextInt(6));
+            if (tree.insertOrAppend(key, "movie")) {
+                keys.add(key);
+            }
+        }
+        String[] terms = new String[3];
+        for (int i = 0; i < terms.length; i++) {
+            // drop one character and change another
+            StringBuilder term = new StringBuilder(keys.get(random.nextInt(keys.size())));
+            term.deleteCharAt(random.nextInt(term.length()));
+            term.setCharAt(random.nextInt(term.length()), (char) ('a' + random.nextInt(26)));
+            terms[i] = term.toString();
+        }
+
+        report("fuzzy x3, every key (n=" + n + ")", time(() -> {
+            for (String term : terms) {
+                for (String key : tree) {
+                    FuzzySearch.distance(key, term);
+                }
+            }
+        }));
+        report("fuzzy x3, FuzzySearch (n=" + n + ")", time(() -> {
+            for (String term : terms) {
+                FuzzySearch.search(tree, term, 2);
+            }
+        }));
+    }
+
+    /**
+     * Return a random lowercase word
+     *
+     * @param random Source of randomness
+     * @param length Length of the word
+     * @return The word
+     */
+    private static String randomName(Random random, int length) {
+        char[] name = new char[length];
+        for (int i = 0; i < length; i++) {
+            name[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(name);
+    }
+
+    /**
+     * Full key traversal: the iterator against sequential and parallel
+     * streams over the rank-splitting Spliterator
+     *
+     * @param n Number of keys
+     */
+    private static void benchmarkTraversal(int n) {
+        BSTree<Integer> tree = new BSTree<>(true);
+        for (int i = 0; i < n; i++) {
+            tree.insert(i);
+        }
+
+        report("traverse, iterator (n=" + n + ")", time(() -> {
+            long sum = 0;
+            for (int key : tree) {
+                sum += key;
+            }
+        }));
+        report("traverse, stream (n=" + n + ")",
+                time(() -> tree.stream().mapToLong(key -> key).sum()));
+        report("traverse, parallel stream ("
+                + Runtime.getRuntime().availableProcessors() + " cores, n=" + n + ")",
+                time(() -> tree.stream().parallel().mapToLong(key -> key).sum()));
+    }
+
+    /**
+     * levelMax on every level, and one pass of TreeStats over the whole tree
+     *
+     * @param n Number of keys
+     */
+    private static void benchmarkStats(int n) {
+        BSTree<Integer> tree = new BSTree<>(true);
+        Random random = new Random(18);
+        for (int i = 0; i < n; i++) {
+            tree.insert(random.nextInt());
+        }
+
+        report("levelMax, every level (n=" + n + ")", time(() -> {
+            for (int level = 0; level <= tree.findHeight(); level++) {
+                tree.levelMax(level);
+            }
+        }));
+        report("stats (" + Runtime.getRuntime().availableProcessors()
+                + " cores, n=" + n + ")", time(tree::stats));
+    }
+
+    /**
+     * Lookup throughput of ConcurrentBSTree for 1 to N reader threads, with
+     * one writer appending a posting every 100 microseconds
+     *
+     * @param n Number of keys
+     */
+    private static void benchmarkConcurrentReads(int n) {
+        ConcurrentBSTree<Integer> tree = new ConcurrentBSTree<>();
+        for (int i = 0; i < n; i++) {
+            tree.insertOrAppend(i, i);
+        }
+        int lookupsPerThread = 1_000_000;
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            int readers = threads;
+            ExecutorService pool = Executors.newFixedThreadPool(readers + 1);
+            AtomicBoolean running = new AtomicBoolean(true);
+            pool.submit(() -> {
+                Random random = new Random();
+                while (running.get()) {
+                    tree.insertOrAppend(random.nextInt(n), n + random.nextInt(n));
+                    LockSupport.parkNanos(100_000);
+                }
+            });
+            double millis = time(() -> {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int r = 0; r < readers; r++) {
+                    futures.add(pool.submit(() -> {
+                        Random random = new Random();
+                        for (int i = 0; i < lookupsPerThread; i++) {
+                            int key = random.nextInt(n);
+                            if (tree.findKey(key)) {
+                                tree.findPostings(key);
+                            }
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    try {
+                        future.get();
+                    } catch (InterruptedException | ExecutionException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+            running.set(false);
+            pool.shutdown();
+            System.out.printf("%-45s %10.0f lookups/ms%n",
+                    "concurrent reads, " + readers + " thread(s) (n=" + n + ")",
+                    readers * (double) lookupsPerThread / millis);
+        }
+    }
+
+    /**
+     * Write moviedata.txt scaled up 'copies' times (titles and actors renamed
+     * per copy) to a temporary file
+     *
+     * @param fileName Movie data file
+     * @param copies   Number of copies
+     * @return The temporary file, deleted on exit
+     * @throws IOException If a file cannot be read or written
+     */
+    private static Path scaledDataFile(String fileName, int copies) throws IOException {
+        List<String> scaled = new ArrayList<>();
+        for (String[][] record : scaledMovieData(fileName, copies)) {
+            scaled.add(record[0][0]);
+            scaled.add(String.join(" ", record[1]));
+            scaled.add(String.join(" ", record[2]));
+            scaled.add(record[3][0]);
+            scaled.add("-");
+        }
+        Path file = Files.createTempFile("moviedata", ".txt");
+        file.toFile().deleteOnExit();
+        Files.write(file, scaled);
+        return file;
+    }
+
+    /**
+     * Load a file into three fresh posting-list trees
+     *
+     * @param fileName Data file
+     * @param parallel True to use the parallel loader
+     */
+    private static void loadFile(String fileName, boolean parallel) {
+        DocumentTable<String> documents = new DocumentTable<>();
+        BSTree<String> movieTree = new BSTree<>(true, documents);
+        BSTree<String> studioTree = new BSTree<>(true, documents);
+        BSTree<String> ratingTree = new BSTree<>(true, documents);
+        if (parallel) {
+            SearchEngine.populateSearchTreesParallel(movieTree, studioTree, ratingTree, fileName);
+        } else {
+            SearchEngine.populateSearchTrees(movieTree, studioTree, ratingTree, fileName);
+        }
+    }
+
+    /**
+     * Parse a data file with Scanner and String.split, as the loader used to
+     *
+     * @param fileName Data file
+     * @return Number of records read
+     */
+    private static int parseWithScanner(String fileName) {
+        int records = 0;
+        try (Scanner scanner = new Scanner(new java.io.File(fileName))) {
+            while (scanner.hasNextLine()) {
+                MovieRecord.parse(scanner.nextLine(), scanner.nextLine(),
+                        scanner.nextLine(), scanner.nextLine());
+                scanner.nextLine();
+                records++;
+            }
+        } catch (IOException e) {
+            throw new java.io.UncheckedIOException(e);
+        }
+        return records;
+    }
+
+    /**
+     * Parse a data file with the memory-mapped MovieFileReader
+     *
+     * @param fileName Data file
+     * @return Number of records read
+     */
+    private static int parseWithMappedReader(String fileName) {
+        int records = 0;
+        try (MovieFileReader reader = new MovieFileReader(fileName)) {
+            while (reader.next() != null) {
+                records++;
+            }
+        } catch (IOException e) {
+            throw new java.io.UncheckedIOException(e);
+        }
+        return records;
+    }
+
+    /**
+     * Loading moviedata.txt scaled up 2000x from disk
+     *
+     * @param fileName Movie data file
+     * @throws IOException If a file cannot be read or written
+     */
+    private static void benchmarkFileLoad(String fileName) throws IOException {
+        String scaled = scaledDataFile(fileName, 2000).toString();
+        report("file parse x2000, Scanner", time(() -> parseWithScanner(scaled)));
+        report("file parse x2000, MovieFileReader", time(() -> parseWithMappedReader(scaled)));
+        report("file load x2000, sequential", time(() -> loadFile(scaled, false)));
+        report("file load x2000, parallel ("
+                + Runtime.getRuntime().availableProcessors() + " cores)",
+                time(() -> loadFile(scaled, true)));
+    }
+
+    /**
+     * Rating queries over the scaled data: printing through System.out
+     * against evaluating to a QueryResult, with and without a QueryCache
+     *
+     * @param fileName Movie data file
+     * @throws IOException If the movie data file cannot be read
+     */
+    private static void benchmarkQueries(String fileName) throws IOException {
+        DocumentTable<String> documents = new DocumentTable<>();
+        BSTree<String> movieTree = new BSTree<>(true, documents);
+        BSTree<String> studioTree = new BSTree<>(true, documents);
+        BSTree<String> ratingTree = new BSTree<>(true, documents);
+        SearchEngine.populateSearchTrees(movieTree, studioTree, ratingTree,
+                scaledDataFile(fileName, 2000).toString());
+        String[] queries = {"pg13", "r pg13", "pg pg13 r", "pg13 r"};
+
+        PrintStream out = System.out;
+        double printed;
+        try {
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            printed = time(() -> {
+                for (String query : queries) {
+                    SearchEngine.searchMyQuery(ratingTree, query);
+                }
+            });
+        } finally {
+            System.setOut(out);
+        }
+        report("rating queries x4, print to null stream", printed);
+        report("rating queries x4, evaluateQuery", time(() -> {
+            for (String query : queries) {
+                SearchEngine.evaluateQuery(ratingTree, query, null);
+            }
+        }));
+        QueryCache cache = new QueryCache(QueryCache.DEFAULT_CAPACITY);
+        report("rating queries x4, evaluateQuery cached", time(() -> {
+            for (String query : queries) {
+                SearchEngine.evaluateQuery(ratingTree, query, cache);
+            }
+        }));
+    }
+
+    /**
+     * Run all benchmarks
+     *
+     * @param args optional path to moviedata.txt and posting count
+     * @throws IOException If the movie data file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        String fileName = args.length > 0 ? args[0] : "moviedata.txt";
+        benchmarkSortedInput();
+        benchmarkIngest(fileName);
+        benchmarkFileLoad(fileName);
+        benchmarkQueries(fileName);
+        benchmarkRadixIndex(fileName);
+        benchmarkTopK(fileName, 10_000);
+        benchmarkIntersection(5000);
+        benchmarkIteratorIntersection(200_000);
+        benchmarkOrderStatistics(200_000);
+        benchmarkHashedLookups(500_000);
+        benchmarkFuzzy(1_000_000);
+        benchmarkTraversal(1_000_000);
+        benchmarkStats(1_000_000);
+        benchmarkConcurrentReads(100_000);
+        benchmarkPostingMemory(args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000);
+    }
+}
@@ -1,6 +1,8 @@
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
 import java.util.*;
 class BSTreeTester {
 
@@ -131,7 +133,41 @@ class BSTreeTester {
         List<Integer> list2 = Arrays.asList(3, 4, 5, 6, 7);
 
         ArrayList<Integer> intersection = bst.intersection(list1.iterator(), list2.iterator());
-        assertEquals(Arrays.asList(5), intersection);
+        assertEquals(Arrays.asList(3, 4, 5), intersection);
+
+        List<Integer> list3 = Arrays.asList(1, 3, 6, 7);
+        assertEquals(Arrays.asList(3, 6, 7),
+                bst.intersection(list3.iterator(), list2.iterator()));
+        assertEquals(Arrays.asList(),
+                bst.intersection(list1.iterator(), Collections.<Integer>emptyIterator()));
+    }
+
+    @Test
+    void testIntersectionIterator() {
+        List<Integer> list1 = Arrays.asList(1, 2, 3, 4, 5, 8, 9);
+        List<Integer> list2 = Arrays.asList(2, 3, 5, 7, 8, 9);
+        List<Integer> list3 = Arrays.asList(0, 3, 5, 6, 9);
+
+        Iterator<Integer> common = bst.intersection(
+                Arrays.asList(list1.iterator(), list2.iterator(), list3.iterator()));
+        assertTrue(common.hasNext());
+        assertTrue(common.hasNext()); // hasNext does not advance
+        assertEquals(Integer.valueOf(3), common.next());
+        assertEquals(Integer.valueOf(5), common.next());
+        assertEquals(Integer.valueOf(9), common.next());
+        assertFalse(common.hasNext());
+        assertThrows(NoSuchElementException.class, common::next);
+
+        assertFalse(bst.intersection(new ArrayList<Iterator<Integer>>()).hasNext());
+
+        // works directly on tree iterators
+        BSTree<Integer> other = new BSTree<>(true);
+        for (int i = 0; i < 10; i++) {
+            bst.insert(i * 2);
+            other.insert(i * 3);
+        }
+        assertEquals(Arrays.asList(0, 6, 12, 18),
+                bst.intersection(bst.iterator(), other.iterator()));
     }
 
     @Test
@@ -150,4 +186,539 @@ class BSTreeTester {
         assertNull(bst.levelMax(-1));
         assertNull(bst.levelMax(3)); // Level doesn't exist
     }
+
+    @Test
+    void testBalancedSortedInsert() {
+        BSTree<Integer> balanced = new BSTree<>(true);
+        assertTrue(balanced.isBalanced());
+        assertFalse(bst.isBalanced());
+
+        for (int i = 0; i < 1000; i++) {
+            balanced.insert(i);
+        }
+        balanced.insert(500); // duplicate key is ignored
+
+        assertEquals(1000, balanced.getSize());
+        // AVL height is at most 1.44 * log2(n + 2)
+        assertTrue(balanced.findHeight() <= 14);
+        assertTrue(balanced.findKey(0));
+        assertTrue(balanced.findKey(999));
+        assertFalse(balanced.findKey(1000));
+
+        balanced.insertData(999, 1);
+        assertEquals(Arrays.asList(1), balanced.findDataList(999));
+
+        Iterator<Integer> iterator = balanced.iterator();
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(Integer.valueOf(i), iterator.next());
+        }
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    void testBalancedRotations() {
+        BSTree<Integer> balanced = new BSTree<>(true);
+        balanced.insert(3);
+        balanced.insert(1);
+        balanced.insert(2); // left-right case
+
+        assertEquals(Integer.valueOf(2), balanced.getRoot().getKey());
+        assertEquals(1, balanced.findHeight());
+
+        balanced.insert(5);
+        balanced.insert(4); // right-left case
+        assertEquals(Integer.valueOf(4), balanced.getRoot().getRight().getKey());
+        assertEquals(2, balanced.findHeight());
+    }
+
+    /**
+     * Check heights and the AVL property of a subtree and return its height
+     */
+    private static <T extends Comparable<? super T>> int checkAvl(BSTree<T>.BSTNode node) {
+        if (node == null) {
+            return -1;
+        }
+        int left = checkAvl(node.getLeft());
+        int right = checkAvl(node.getRight());
+        assertTrue(Math.abs(left - right) <= 1);
+        return 1 + Math.max(left, right);
+    }
+
+    @Test
+    void testRemove() {
+        BSTree<Integer> balanced = new BSTree<>(true);
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(12);
+        for (int i = 0; i < 5000; i++) {
+            int key = random.nextInt(1000);
+            if (random.nextBoolean()) {
+                balanced.insert(key);
+                expected.add(key);
+            } else {
+                assertEquals(expected.remove(key), balanced.remove(key));
+            }
+            assertEquals(expected.size(), balanced.getSize());
+        }
+        assertEquals(checkAvl(balanced.getRoot()), balanced.findHeight());
+        List<Integer> keys = new ArrayList<>();
+        balanced.iterator().forEachRemaining(keys::add);
+        assertEquals(new ArrayList<>(expected), keys);
+
+        // two children: the successor's list moves along with its key
+        for (int key : new int[] {3, 1, 5, 4, 6}) {
+            bst.insert(key);
+        }
+        bst.insertData(4, 40);
+        assertTrue(bst.remove(3));
+        assertFalse(bst.remove(3));
+        assertFalse(bst.findKey(3));
+        assertEquals(Integer.valueOf(4), bst.getRoot().getKey());
+        assertEquals(Arrays.asList(40), bst.findDataList(4));
+        assertEquals(4, bst.getSize());
+        assertEquals(2, bst.findHeight());
+
+        while (bst.getRoot() != null) {
+            bst.remove(bst.getRoot().getKey());
+        }
+        assertEquals(0, bst.getSize());
+        assertEquals(-1, bst.findHeight());
+        assertThrows(NullPointerException.class, () -> bst.remove(null));
+    }
+
+    @Test
+    void testRemoveData() {
+        BSTree<String> tree = new BSTree<String>(true, new DocumentTable<String>());
+        tree.insertOrAppend("actor", "a");
+        tree.insertOrAppend("actor", "b");
+        tree.insertOrAppend("other", "a");
+
+        assertTrue(tree.removeData("actor", "a"));
+        assertFalse(tree.removeData("actor", "a"));
+        assertFalse(tree.removeData("missing", "a"));
+        assertEquals(Arrays.asList("b"), tree.findDataList("actor"));
+
+        assertTrue(tree.removeData("actor", "b"));
+        assertFalse(tree.findKey("actor"));
+        assertEquals(1, tree.getSize());
+
+        bst.insert(3);
+        bst.insertData(3, 30);
+        assertTrue(bst.removeData(3, 30));
+        assertFalse(bst.findKey(3));
+        assertThrows(NullPointerException.class, () -> bst.removeData(3, null));
+    }
+
+    @Test
+    void testHashIndex() {
+        BSTree<String> plain = new BSTree<>(true);
+        BSTree<String> hashed = new BSTree<>(true, null, true);
+        assertFalse(plain.isHashed());
+        assertTrue(hashed.isHashed());
+
+        // random inserts, appends and removes, including two-child removals
+        // that move a successor's key into another node
+        Random random = new Random(22);
+        for (int i = 0; i < 20000; i++) {
+            String key = "k" + random.nextInt(2000);
+            int action = random.nextInt(3);
+            if (action == 0) {
+                plain.insert(key);
+                hashed.insert(key);
+            } else if (action == 1) {
+                plain.insertOrAppend(key, "d" + i);
+                hashed.insertOrAppend(key, "d" + i);
+            } else {
+                assertEquals(plain.remove(key), hashed.remove(key));
+            }
+        }
+        assertEquals(plain.getSize(), hashed.getSize());
+        assertEquals(checkAvl(hashed.getRoot()), hashed.findHeight());
+        for (int k = 0; k < 2000; k++) {
+            String key = "k" + k;
+            assertEquals(plain.findKey(key), hashed.findKey(key));
+            if (plain.findKey(key)) {
+                assertEquals(plain.findDataList(key), hashed.findDataList(key));
+            } else {
+                assertThrows(IllegalArgumentException.class, () -> hashed.findDataList(key));
+            }
+        }
+        assertEquals(toList(plain.iterator()), toList(hashed.iterator()));
+
+        while (hashed.getRoot() != null) {
+            hashed.remove(hashed.getRoot().getKey());
+        }
+        assertFalse(hashed.findKey("k1"));
+        hashed.insert("k1");
+        hashed.insertData("k1", "d");
+        assertEquals(Arrays.asList("d"), hashed.findDataList("k1"));
+    }
+
+    /**
+     * Drain an iterator into a list
+     */
+    private static <T> List<T> toList(Iterator<T> iterator) {
+        List<T> list = new ArrayList<>();
+        iterator.forEachRemaining(list::add);
+        return list;
+    }
+
+    @Test
+    void testOrderedQueries() {
+        BSTree<Integer> balanced = new BSTree<>(true);
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(15);
+        for (int i = 0; i < 500; i++) {
+            int key = random.nextInt(2000) * 2; // even keys only
+            balanced.insert(key);
+            expected.add(key);
+        }
+
+        for (int probe = -1; probe <= 4001; probe += 7) {
+            assertEquals(expected.floor(probe), balanced.floor(probe));
+            assertEquals(expected.ceiling(probe), balanced.ceiling(probe));
+            assertEquals(new ArrayList<>(expected.headSet(probe)),
+                    toList(balanced.headSet(probe)));
+            assertEquals(new ArrayList<>(expected.tailSet(probe)),
+                    toList(balanced.tailSet(probe)));
+            assertEquals(new ArrayList<>(expected.subSet(probe, probe + 100)),
+                    toList(balanced.range(probe, probe + 100)));
+        }
+        assertEquals(new ArrayList<>(expected), toList(balanced.range(null, null)));
+        assertTrue(toList(balanced.range(100, 50)).isEmpty());
+
+        assertNull(bst.floor(1));
+        assertNull(bst.ceiling(1));
+        assertFalse(bst.range(null, null).hasNext());
+        assertThrows(NullPointerException.class, () -> bst.floor(null));
+        assertThrows(NullPointerException.class, () -> bst.headSet(null));
+    }
+
+    @Test
+    void testOrderStatistics() {
+        BSTree<Integer> balanced = new BSTree<>(true);
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(16);
+        for (int i = 0; i < 3000; i++) {
+            int key = random.nextInt(1000);
+            if (random.nextInt(3) > 0) {
+                balanced.insert(key);
+                expected.add(key);
+            } else {
+                balanced.remove(key);
+                expected.remove(key);
+            }
+        }
+
+        List<Integer> keys = new ArrayList<>(expected);
+        for (int k = 0; k < keys.size(); k++) {
+            assertEquals(keys.get(k), balanced.select(k));
+            assertEquals(k, balanced.rank(keys.get(k)));
+        }
+        for (int probe = -5; probe < 1010; probe += 13) {
+            assertEquals(expected.headSet(probe).size(), balanced.rank(probe));
+            assertEquals(expected.subSet(probe, probe + 50).size(),
+                    balanced.countRange(probe, probe + 50));
+        }
+        assertEquals(expected.size(), balanced.countRange(null, null));
+        assertEquals(0, balanced.countRange(50, 10));
+
+        assertThrows(IndexOutOfBoundsException.class, () -> balanced.select(-1));
+        assertThrows(IndexOutOfBoundsException.class, () -> balanced.select(keys.size()));
+        assertThrows(NullPointerException.class, () -> balanced.rank(null));
+        assertEquals(0, bst.rank(7));
+    }
+
+    @Test
+    void testIteratorFailFast() {
+        for (int key : new int[] {5, 2, 8}) {
+            bst.insert(key);
+        }
+        Iterator<Integer> keys = bst.iterator();
+        assertEquals(Integer.valueOf(2), keys.next());
+        bst.insertData(5, 50); // data changes do not affect the keys
+        assertEquals(Integer.valueOf(5), keys.next());
+
+        bst.insert(9);
+        assertThrows(ConcurrentModificationException.class, keys::next);
+        Iterator<Integer> afterInsert = bst.iterator();
+        bst.remove(2);
+        assertThrows(ConcurrentModificationException.class, afterInsert::next);
+        bst.insert(5); // existing key, nothing changes
+        assertEquals(Arrays.asList(5, 8, 9), toList(bst.iterator()));
+    }
+
+    @Test
+    void testSpliterator() {
+        BSTree<Integer> balanced = new BSTree<>(true);
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            balanced.insert(i * 3);
+            expected.add(i * 3);
+        }
+
+        Spliterator<Integer> keys = balanced.spliterator();
+        assertTrue(keys.hasCharacteristics(Spliterator.SORTED | Spliterator.SUBSIZED));
+        Spliterator<Integer> prefix = keys.trySplit();
+        assertEquals(5000, prefix.estimateSize());
+        assertEquals(5000, keys.getExactSizeIfKnown());
+        List<Integer> halves = new ArrayList<>();
+        prefix.forEachRemaining(halves::add);
+        keys.forEachRemaining(halves::add);
+        assertEquals(expected, halves);
+
+        assertEquals(expected, balanced.stream().parallel().collect(
+                java.util.stream.Collectors.toList()));
+        assertEquals(expected.stream().mapToLong(i -> i).sum(),
+                balanced.stream().parallel().mapToLong(i -> i).sum());
+        assertEquals(0, bst.stream().count());
+
+        Spliterator<Integer> stale = balanced.spliterator();
+        balanced.insert(-1);
+        assertThrows(ConcurrentModificationException.class, () -> stale.tryAdvance(key -> { }));
+    }
+
+    @Test
+    void testStats() {
+        for (boolean balanced : new boolean[] {false, true}) {
+            BSTree<Integer> tree = new BSTree<>(balanced);
+            Random random = new Random(18);
+            for (int i = 0; i < 50_000; i++) {
+                int key = random.nextInt(100_000);
+                tree.insert(key);
+                for (int j = key % 5; j > 0; j--) {
+                    tree.insertData(key, j);
+                }
+            }
+
+            TreeStats<Integer> stats = tree.stats();
+            assertEquals(tree.getSize(), stats.getSize());
+            assertEquals(tree.findHeight(), stats.getHeight());
+            long counted = 0;
+            for (int level = 0; level <= stats.getHeight(); level++) {
+                assertEquals(tree.levelMax(level), stats.getLevelMax(level));
+                counted += stats.getLevelCount(level);
+            }
+            assertEquals(tree.getSize(), counted);
+            assertEquals(tree.getRoot().getKey(), stats.getLevelMin(0));
+            assertNull(stats.getLevelMax(stats.getHeight() + 1));
+            assertEquals(0, stats.getLevelCount(-1));
+
+            long[] histogram = stats.getPostingHistogram();
+            long[] expected = new long[histogram.length];
+            for (int key : tree) {
+                int bucket = 0;
+                for (int length = tree.findDataList(key).size(); length > 0; length /= 2) {
+                    bucket++;
+                }
+                expected[bucket]++;
+            }
+            assertArrayEquals(expected, histogram);
+        }
+
+        TreeStats<Integer> empty = bst.stats();
+        assertEquals(0, empty.getSize());
+        assertEquals(-1, empty.getHeight());
+        assertNull(empty.getLevelMin(0));
+    }
+
+    @Test
+    void testMillionSortedKeysNoStackOverflow() {
+        BSTree<Integer> balanced = new BSTree<>(true);
+        int n = 1_000_000;
+        for (int i = 0; i < n; i++) {
+            balanced.insert(i);
+        }
+        balanced.insertData(n - 1, 42);
+
+        assertEquals(n, balanced.getSize());
+        assertTrue(balanced.findKey(0));
+        assertTrue(balanced.findKey(n - 1));
+        assertEquals(Arrays.asList(42), balanced.findDataList(n - 1));
+        assertTrue(balanced.findHeight() <= 28);
+        assertNotNull(balanced.levelMax(balanced.findHeight()));
+    }
+
+    @Test
+    void testDegenerateTreeNoStackOverflow() {
+        // well past the depth where the recursive paths used to overflow
+        int n = 20_000;
+        for (int i = 0; i < n; i++) {
+            bst.insert(i);
+        }
+        bst.insertData(n - 1, 42);
+
+        assertEquals(n, bst.getSize());
+        assertTrue(bst.findKey(n - 1));
+        assertFalse(bst.findKey(n));
+        assertEquals(Arrays.asList(42), bst.findDataList(n - 1));
+        assertEquals(n - 1, bst.findHeight());
+        assertEquals(Integer.valueOf(n - 1), bst.levelMax(n - 1));
+        assertNull(bst.levelMax(n));
+    }
+
+    @Test
+    void testInsertOrAppend() {
+        assertTrue(bst.insertOrAppend(5, 10));
+        assertFalse(bst.insertOrAppend(5, 11));
+        assertTrue(bst.insertOrAppend(3, 20));
+
+        assertEquals(2, bst.getSize());
+        assertEquals(Arrays.asList(10, 11), bst.findDataList(5));
+        assertEquals(Arrays.asList(20), bst.findDataList(3));
+
+        assertThrows(NullPointerException.class, () -> bst.insertOrAppend(null, 1));
+        assertThrows(NullPointerException.class, () -> bst.insertOrAppend(1, null));
+    }
+
+    @Test
+    void testPostingListMode() {
+        DocumentTable<String> documents = new DocumentTable<>();
+        BSTree<String> actors = new BSTree<>(true, documents);
+        BSTree<String> studios = new BSTree<>(true, documents);
+        assertSame(documents, actors.getDocuments());
+        assertNull(bst.getDocuments());
+
+        actors.insertOrAppend("rdj", "iron-man");
+        actors.insertOrAppend("rdj", "chef");
+        actors.insertOrAppend("rdj", "iron-man"); // kept twice, like the LinkedList
+        studios.insertOrAppend("paramount", "iron-man");
+
+        // titles are interned once and shared between the trees
+        assertEquals(2, documents.size());
+        assertEquals(0, documents.indexOf("iron-man"));
+        assertEquals(Arrays.asList("iron-man", "iron-man", "chef"),
+                actors.findDataList("rdj"));
+        assertEquals(Arrays.asList("iron-man"), studios.findDataList("paramount"));
+
+        // the returned list is a materialized copy
+        actors.findDataList("rdj").clear();
+        assertEquals(3, actors.findDataList("rdj").size());
+
+        assertTrue(actors.getRoot().removeInfo("iron-man")); // one occurrence
+        assertFalse(actors.getRoot().removeInfo("unknown"));
+        assertEquals(Arrays.asList("iron-man", "chef"), actors.findDataList("rdj"));
+    }
+
+    @Test
+    void testPostingList() {
+        PostingList postings = new PostingList();
+        assertTrue(postings.isEmpty());
+        for (int id : new int[] {5, 1, 9, 3, 7, 1}) {
+            postings.add(id);
+        }
+        assertArrayEquals(new int[] {1, 1, 3, 5, 7, 9}, postings.toArray());
+        assertTrue(postings.contains(7));
+        assertTrue(postings.remove(3));
+        assertFalse(postings.remove(3));
+        assertTrue(postings.remove(1));
+        assertTrue(postings.contains(1));
+        assertEquals(4, postings.size());
+        assertEquals(9, postings.get(3));
+        assertThrows(IndexOutOfBoundsException.class, () -> postings.get(4));
+    }
+
+    @Test
+    void testPostingListIntersect() {
+        PostingList small = new PostingList();
+        PostingList large = new PostingList();
+        PostingList odd = new PostingList();
+        for (int id : new int[] {3, 50, 99, 500}) {
+            small.add(id);
+        }
+        for (int id = 0; id < 1000; id++) {
+            large.add(id);
+            if (id % 2 == 1) {
+                odd.add(id);
+            }
+        }
+
+        assertArrayEquals(new int[] {3, 99},
+                PostingList.intersect(Arrays.asList(large, small, odd)).toArray());
+        assertArrayEquals(small.toArray(),
+                PostingList.intersect(Arrays.asList(small)).toArray());
+        assertTrue(PostingList.intersect(new ArrayList<>()).isEmpty());
+        assertTrue(PostingList.intersect(
+                Arrays.asList(small, new PostingList())).isEmpty());
+
+        // repeated ids: as often as in the first list for intersect, as in
+        // the list repeating them most for union
+        PostingList twice = new PostingList();
+        for (int id : new int[] {3, 3, 4, 99, 99, 99}) {
+            twice.add(id);
+        }
+        assertArrayEquals(new int[] {3, 3, 99, 99, 99},
+                PostingList.intersect(Arrays.asList(twice, small)).toArray());
+        assertArrayEquals(new int[] {3, 99},
+                PostingList.intersect(Arrays.asList(small, twice)).toArray());
+        assertArrayEquals(new int[] {3, 3, 4, 50, 99, 99, 99, 500},
+                PostingList.union(Arrays.asList(small, twice, small)).toArray());
+        assertArrayEquals(new int[] {4},
+                PostingList.difference(twice, small).toArray());
+    }
+
+    @Test
+    void testFindPostings() {
+        BSTree<String> tree = new BSTree<>(true, new DocumentTable<String>());
+        tree.insertOrAppend("rdj", "iron-man");
+        tree.insertOrAppend("rdj", "chef");
+
+        assertArrayEquals(new int[] {0, 1}, tree.findPostings("rdj").toArray());
+        assertThrows(IllegalArgumentException.class, () -> tree.findPostings("nobody"));
+        assertThrows(NullPointerException.class, () -> tree.findPostings(null));
+        assertThrows(IllegalStateException.class, () -> bst.findPostings(5));
+    }
+
+    @Test
+    void testFreeze() {
+        BSTree<String> tree = new BSTree<>(true);
+        tree.insertOrAppend("rdj", "iron-man");
+        tree.insertOrAppend("rdj", "chef");
+        tree.insertOrAppend("cheadle", "iron-man");
+
+        BSTSnapshot<String> snapshot = tree.freeze();
+        tree.insertOrAppend("rdj", "dolittle"); // not visible in the snapshot
+        tree.insert("zendaya");
+
+        assertEquals(2, snapshot.getSize());
+        assertTrue(snapshot.findKey("rdj"));
+        assertFalse(snapshot.findKey("zendaya"));
+        assertEquals(Arrays.asList("iron-man", "chef"), snapshot.findDataList("rdj"));
+        assertEquals(2, snapshot.getDocuments().size());
+
+        List<String> keys = new ArrayList<>();
+        for (String key : snapshot) {
+            keys.add(key);
+        }
+        assertEquals(Arrays.asList("cheadle", "rdj"), keys);
+
+        assertThrows(UnsupportedOperationException.class,
+                () -> snapshot.findDataList("rdj").remove(0));
+        assertThrows(UnsupportedOperationException.class,
+                () -> snapshot.findPostings("rdj").add(7));
+        assertThrows(IllegalArgumentException.class, () -> snapshot.findDataList("x"));
+        assertThrows(NullPointerException.class, () -> snapshot.findKey(null));
+    }
+
+    @Test
+    void testRepeatedQueriesDoNotModifyIndex() {
+        BSTree<String> tree = new BSTree<>(true);
+        tree.insertOrAppend("rdj", "iron-man");
+        tree.insertOrAppend("rdj", "chef");
+        tree.insertOrAppend("sj", "iron-man");
+
+        PrintStream out = System.out;
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        try {
+            System.setOut(new PrintStream(first));
+            SearchEngine.searchMyQuery(tree, "rdj sj");
+            System.setOut(new PrintStream(second));
+            SearchEngine.searchMyQuery(tree, "rdj sj");
+        } finally {
+            System.setOut(out);
+        }
+
+        assertEquals(first.toString(), second.toString());
+        assertEquals(Arrays.asList("iron-man", "chef"), tree.findDataList("rdj"));
+    }
 }
\ No newline at end of file
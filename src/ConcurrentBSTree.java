@@ -0,0 +1,324 @@
+/*
+ * Name: Felix Najera
+ * PID:  A17618969
+ */
+
+import java.util.*;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+
+/**
+ * Thread-safe wrapper around a balanced, posting-list mode BSTree for many
+ * parallel readers and occasional writers. Writers are serialized by a
+ * StampedLock; readers first walk the tree without locking under an
+ * optimistic stamp and only take the read lock if a write got in the way.
+ * Everything handed back to readers is a copy, so it stays valid after later
+ * writes.
+ *
+ * @author Felix Najera
+ * @since  8/27/24
+ */
+public class ConcurrentBSTree<T extends Comparable<? super T>>
+        implements UpdatableIndex<T>, Iterable<T> {
+
+    // an AVL tree of 2^31 keys is at most 45 levels deep; a longer walk means
+    // we saw a half-finished rotation and should retry under the lock
+    private static final int MAX_OPTIMISTIC_DEPTH = 64;
+
+    private final BSTree<T> tree; // the wrapped tree, only touched under lock
+    private final StampedLock lock;
+
+    /**
+     * 0-arg constructor that initializes an empty tree with its own
+     * document table
+     */
+    public ConcurrentBSTree() {
+        this(new DocumentTable<>());
+    }
+
+    /**
+     * Constructor that initializes an empty tree sharing a document table
+     *
+     * @param documents Document table, may be shared with other trees
+     */
+    public ConcurrentBSTree(DocumentTable<T> documents) {
+        tree = new BSTree<>(true, documents);
+        lock = new StampedLock();
+    }
+
+    /* * * * * Writers * * * * */
+
+    /**
+     * Insert a key into the tree
+     *
+     * @param key Key to insert
+     * @return true if insertion is successful
+     * @throws NullPointerException If key is null
+     */
+    public boolean insert(T key) {
+        long stamp = lock.writeLock();
+        try {
+            return tree.insert(key);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Insert 'data' into the list of the node whose key is 'key'
+     *
+     * @param key  Target key
+     * @param data To be added to key's list
+     * @throws NullPointerException     If either key or data is null
+     * @throws IllegalArgumentException If key is not found in the tree
+     */
+    public void insertData(T key, T data) {
+        long stamp = lock.writeLock();
+        try {
+            tree.insertData(key, data);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Insert 'key' if needed and append 'data' to its list
+     *
+     * @param key  Target key
+     * @param data To be added to key's list
+     * @return True if the key was newly inserted, false if it already existed
+     * @throws NullPointerException If either key or data is null
+     */
+    @Override
+    public boolean insertOrAppend(T key, T data) {
+        long stamp = lock.writeLock();
+        try {
+            return tree.insertOrAppend(key, data);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Remove a key and its list from the tree
+     *
+     * @param key Key to remove
+     * @return True if the key was found and removed, false otherwise
+     * @throws NullPointerException If key is null
+     */
+    public boolean remove(T key) {
+        long stamp = lock.writeLock();
+        try {
+            return tree.remove(key);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Remove 'data' from the list of 'key', dropping the key once its list
+     * is empty
+     *
+     * @param key  Target key
+     * @param data To be removed from key's list
+     * @return True if data was found and removed, false otherwise
+     * @throws NullPointerException If either key or data is null
+     */
+    @Override
+    public boolean removeData(T key, T data) {
+        long stamp = lock.writeLock();
+        try {
+            return tree.removeData(key, data);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /* * * * * Readers * * * * */
+
+    /**
+     * Walk down to the node holding 'key'
+     *
+     * @param key      Target key
+     * @param maxDepth Give up after this many levels
+     * @return The node, null if the key is not in the tree
+     * @throws IllegalStateException If the walk exceeded maxDepth
+     */
+    private BSTree<T>.BSTNode walk(T key, int maxDepth) {
+        BSTree<T>.BSTNode node = tree.getRoot();
+        for (int depth = 0; node != null; depth++) {
+            if (depth > maxDepth) {
+                throw new IllegalStateException("Tree changed during the walk");
+            }
+            int compare = key.compareTo(node.getKey());
+            if (compare == 0) {
+                return node;
+            }
+            node = compare < 0 ? node.getLeft() : node.getRight();
+        }
+        return null;
+    }
+
+    /**
+     * Find the node holding 'key' and apply 'reader' to it (or to null if the
+     * key is missing). Tries an optimistic lock-free read first and falls
+     * back to the read lock if a writer interfered.
+     *
+     * @param key    Target key
+     * @param reader Function of the node; must copy anything it returns
+     * @return The reader's result
+     * @throws NullPointerException If key is null
+     */
+    private <R> R read(T key, Function<BSTree<T>.BSTNode, R> reader) {
+        if (key == null) {
+            throw new NullPointerException("Key cannot be null");
+        }
+
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            try {
+                R result = reader.apply(walk(key, MAX_OPTIMISTIC_DEPTH));
+                if (lock.validate(stamp)) {
+                    return result;
+                }
+            } catch (RuntimeException e) {
+                // saw a half-finished write; validate would fail, so retry
+                if (lock.validate(stamp)) {
+                    throw e;
+                }
+            }
+        }
+
+        stamp = lock.readLock();
+        try {
+            return reader.apply(walk(key, Integer.MAX_VALUE));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Return the node, throwing if it is missing
+     *
+     * @param node Node found by a walk
+     * @return The node
+     * @throws IllegalArgumentException If node is null
+     */
+    private static <N> N requireNode(N node) {
+        if (node == null) {
+            throw new IllegalArgumentException("Key not found in the tree");
+        }
+        return node;
+    }
+
+    @Override
+    public boolean findKey(T key) {
+        return read(key, node -> node != null);
+    }
+
+    /**
+     * Return a copy of the documents related to 'key'
+     *
+     * @param key Target key
+     * @return New list of documents related to key
+     * @throws NullPointerException     If key is null
+     * @throws IllegalArgumentException If key is not found in the tree
+     */
+    @Override
+    public LinkedList<T> findDataList(T key) {
+        return read(key, node -> requireNode(node).getDataList());
+    }
+
+    /**
+     * Return a read-only copy of the postings of 'key'
+     *
+     * @param key Target key
+     * @return Read-only PostingList of key
+     * @throws NullPointerException     If key is null
+     * @throws IllegalArgumentException If key is not found in the tree
+     */
+    @Override
+    public PostingList findPostings(T key) {
+        return read(key, node -> PostingList.readOnly(requireNode(node).postings.toArray()));
+    }
+
+    @Override
+    public DocumentTable<T> getDocuments() {
+        return tree.getDocuments();
+    }
+
+    @Override
+    public int getSize() {
+        long stamp = lock.tryOptimisticRead();
+        int size = tree.getSize();
+        if (lock.validate(stamp)) {
+            return size;
+        }
+        stamp = lock.readLock();
+        try {
+            return tree.getSize();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Return an iterator over a copy of the keys from 'lo' (inclusive) to
+     * 'hi' (exclusive), taken under the read lock
+     *
+     * @param lo Smallest key to return, null for no lower bound
+     * @param hi Stop before this key, null for no upper bound
+     * @return Iterator over the keys in range
+     */
+    @Override
+    public Iterator<T> range(T lo, T hi) {
+        ArrayList<T> keys = new ArrayList<>();
+        long stamp = lock.readLock();
+        try {
+            tree.range(lo, hi).forEachRemaining(keys::add);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return keys.iterator();
+    }
+
+    @Override
+    public long getVersion() {
+        long stamp = lock.tryOptimisticRead();
+        long version = tree.getVersion();
+        if (lock.validate(stamp)) {
+            return version;
+        }
+        stamp = lock.readLock();
+        try {
+            return tree.getVersion();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Return a read-only snapshot of the tree taken under the read lock
+     *
+     * @return A frozen copy of the tree
+     */
+    public BSTSnapshot<T> snapshot() {
+        long stamp = lock.readLock();
+        try {
+            return tree.freeze();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Return an iterator over the keys as of now, in ascending order. The
+     * keys are copied, so later writes do not affect the iterator.
+     *
+     * @return Key iterator
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return snapshot().iterator();
+    }
+}
@@ -0,0 +1,91 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+class ConcurrentBSTreeTester {
+
+    private ConcurrentBSTree<Integer> tree;
+
+    @BeforeEach
+    void setUp() {
+        tree = new ConcurrentBSTree<>();
+    }
+
+    @Test
+    void testSingleThreaded() {
+        assertTrue(tree.insertOrAppend(5, 50));
+        assertFalse(tree.insertOrAppend(5, 51));
+        tree.insert(3);
+        tree.insertData(3, 30);
+
+        assertEquals(2, tree.getSize());
+        assertTrue(tree.findKey(3));
+        assertFalse(tree.findKey(4));
+        assertEquals(Arrays.asList(50, 51), tree.findDataList(5));
+        assertArrayEquals(new int[] {0, 1}, tree.findPostings(5).toArray());
+        assertTrue(tree.findPostings(5).isReadOnly());
+
+        List<Integer> keys = new ArrayList<>();
+        for (Integer key : tree) {
+            keys.add(key);
+        }
+        assertEquals(Arrays.asList(3, 5), keys);
+
+        assertThrows(NullPointerException.class, () -> tree.findKey(null));
+        assertThrows(IllegalArgumentException.class, () -> tree.findDataList(4));
+        assertThrows(IllegalArgumentException.class, () -> tree.insertData(4, 1));
+    }
+
+    @Test
+    void testParallelReadersWithWriter() throws Exception {
+        int n = 100_000;
+        int readers = 4;
+        List<Integer> keys = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            keys.add(i);
+        }
+        Collections.shuffle(keys, new Random(42));
+
+        // keys[0..published) are fully written and must be visible to readers
+        AtomicInteger published = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(readers + 1);
+        List<Future<?>> futures = new ArrayList<>();
+        futures.add(pool.submit(() -> {
+            for (int i = 0; i < n; i++) {
+                int key = keys.get(i);
+                tree.insertOrAppend(key, -key);
+                published.set(i + 1);
+            }
+        }));
+        for (int r = 0; r < readers; r++) {
+            int seed = r;
+            futures.add(pool.submit(() -> {
+                Random random = new Random(seed);
+                while (published.get() < n) {
+                    int limit = published.get();
+                    if (limit == 0) {
+                        continue;
+                    }
+                    int key = keys.get(random.nextInt(limit));
+                    assertTrue(tree.findKey(key));
+                    assertEquals(Arrays.asList(-key), tree.findDataList(key));
+                    assertEquals(1, tree.findPostings(key).size());
+                    assertTrue(tree.getSize() >= limit);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        assertEquals(n, tree.getSize());
+        int expected = 0;
+        for (Integer key : tree) {
+            assertEquals(Integer.valueOf(expected++), key);
+        }
+        assertEquals(n, expected);
+    }
+}
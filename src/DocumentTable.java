@@ -0,0 +1,110 @@
+/*
+ * Name: Felix Najera
+ * PID:  A17618969
+ */
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Table that interns documents (e.g. movie titles) once and hands out dense
+ * int ids for them, so several trees can share one copy of every document and
+ * store ids instead of references.
+ *
+ * The table is thread-safe: interning new documents is serialized, while
+ * lookups by id or by document never block and may run alongside it.
+ *
+ * @author Felix Najera
+ * @since  8/27/24
+ */
+public class DocumentTable<T> {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final ConcurrentHashMap<T, Integer> ids; // document -> id
+    private volatile Object[] documents; // id -> document, replaced on growth
+    private volatile int size; // number of ids handed out
+
+    /**
+     * 0-arg constructor that initializes an empty table
+     */
+    public DocumentTable() {
+        ids = new ConcurrentHashMap<>();
+        documents = new Object[INITIAL_CAPACITY];
+        size = 0;
+    }
+
+    /**
+     * Return the id of a document, adding it to the table if it is new. Ids are
+     * handed out in increasing order starting at 0.
+     *
+     * @param document Document to intern
+     * @return The document's id
+     * @throws NullPointerException If document is null
+     */
+    public int intern(T document) {
+        if (document == null) {
+            throw new NullPointerException("Document cannot be null");
+        }
+        Integer id = ids.get(document);
+        return id != null ? id : add(document);
+    }
+
+    /**
+     * Slow path of intern: append a document that was not found
+     *
+     * @param document Document to add
+     * @return The document's id
+     */
+    private synchronized int add(T document) {
+        Integer existing = ids.get(document);
+        if (existing != null) {
+            return existing;
+        }
+
+        Object[] current = documents;
+        if (size == current.length) {
+            // readers holding the old array still see every id below size
+            current = Arrays.copyOf(current, size * 2);
+            documents = current;
+        }
+        int id = size;
+        current[id] = document;
+        size = id + 1; // publishes the slot before the id can be found
+        ids.put(document, id);
+        return id;
+    }
+
+    /**
+     * Return the id of a document without adding it
+     *
+     * @param document Document to look up
+     * @return The document's id, -1 if it is not in the table
+     */
+    public int indexOf(T document) {
+        Integer id = ids.get(document);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Return the document with the given id
+     *
+     * @param id Document id
+     * @return The document
+     * @throws IndexOutOfBoundsException If id is not a valid id
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int id) {
+        Objects.checkIndex(id, size);
+        return (T) documents[id];
+    }
+
+    /**
+     * Return the number of interned documents
+     *
+     * @return The number of documents
+     */
+    public int size() {
+        return size;
+    }
+}
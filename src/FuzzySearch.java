@@ -0,0 +1,216 @@
+/*
+ * Name: Felix Najera
+ * PID:  A17618969
+ */
+
+import java.util.*;
+
+/**
+ * Typo-tolerant key lookup: finds the keys of an index within a bounded edit
+ * distance of a term, counting insertions, deletions, substitutions and
+ * swaps of adjacent characters ("scarlet-johansson" is one edit away from
+ * "scarlett-johansson").
+ *
+ * The keys are walked in order while one row of the edit-distance table is
+ * kept per character of the current key, so keys that share a prefix share
+ * its rows. Once every entry of a row exceeds the bound, no key starting
+ * with that prefix can match, and the walk seeks past all of them with a new
+ * range. Only keys whose prefixes stay within reach of the term are visited,
+ * which on a large index is a small fraction of them. This relies on range
+ * starting in O(log n), as it does for BSTree, RadixIndex and the snapshots;
+ * ConcurrentBSTree copies every key in range and gains nothing.
+ *
+ * @author Felix Najera
+ * @since  8/27/24
+ */
+public class FuzzySearch {
+
+    public static final int MAX_DISTANCE = 3; // larger bounds match too much to be useful
+
+    // best match first: fewest edits, then most documents, then alphabetical
+    private static final Comparator<Match> RANKING = Comparator
+            .comparingInt(Match::getDistance)
+            .thenComparing(Comparator.comparingInt(Match::getDocumentCount).reversed())
+            .thenComparing(Match::getKey);
+
+    /**
+     * Find the keys within 'maxDistance' edits of 'term'
+     *
+     * @param index       Index to search
+     * @param term        Term to match
+     * @param maxDistance Largest number of edits allowed
+     * @return The matching keys, best first
+     * @throws IllegalArgumentException If maxDistance is negative or larger
+     *                                  than MAX_DISTANCE
+     */
+    public static List<Match> search(SearchIndex<String> index, String term, int maxDistance) {
+        if (maxDistance < 0 || maxDistance > MAX_DISTANCE) {
+            throw new IllegalArgumentException(
+                    "Distance must be between 0 and " + MAX_DISTANCE);
+        }
+
+        int maxLength = term.length() + maxDistance; // longer keys need too many deletions
+        int[][] rows = new int[maxLength + 1][term.length() + 1];
+        for (int j = 0; j <= term.length(); j++) {
+            rows[0][j] = j;
+        }
+
+        List<Match> matches = new ArrayList<>();
+        String previous = ""; // key whose prefix the computed rows belong to
+        int computed = 0; // rows[0..computed] are valid for previous
+        Iterator<String> keys = index.range(null, null);
+        while (keys.hasNext()) {
+            String key = keys.next();
+            int depth = Math.min(computed, commonPrefix(previous, key));
+            int dead = 0; // length of a prefix no match can start with, 0 if none
+            while (depth < Math.min(key.length(), maxLength)) {
+                depth++;
+                if (fillRow(rows, depth, key, term) > maxDistance) {
+                    dead = depth;
+                    break;
+                }
+            }
+            if (dead == 0 && key.length() > maxLength) {
+                dead = maxLength + 1;
+            }
+            previous = key;
+            computed = depth;
+
+            if (dead > 0) {
+                String end = SearchEngine.prefixEnd(key.substring(0, dead));
+                if (end == null) {
+                    break;
+                }
+                keys = index.range(end, null);
+            } else if (rows[key.length()][term.length()] <= maxDistance) {
+                matches.add(new Match(key, rows[key.length()][term.length()],
+                        documentCount(index, key)));
+            }
+        }
+
+        matches.sort(RANKING);
+        return matches;
+    }
+
+    /**
+     * Return the edit distance between two strings, allowing insertions,
+     * deletions, substitutions and swaps of adjacent characters
+     *
+     * @param key  First string
+     * @param term Second string
+     * @return The number of edits needed to turn one into the other
+     */
+    static int distance(String key, String term) {
+        int[][] rows = new int[key.length() + 1][term.length() + 1];
+        for (int j = 0; j <= term.length(); j++) {
+            rows[0][j] = j;
+        }
+        for (int i = 1; i <= key.length(); i++) {
+            fillRow(rows, i, key, term);
+        }
+        return rows[key.length()][term.length()];
+    }
+
+    /**
+     * Compute row 'i' of the edit-distance table from the rows above it
+     *
+     * @param rows Table; rows 0 to i - 1 must be filled in
+     * @param i    Row to fill, the length of the key prefix
+     * @param key  Key the rows are for
+     * @param term Term being matched
+     * @return The smallest entry of the row
+     */
+    private static int fillRow(int[][] rows, int i, String key, String term) {
+        int[] row = rows[i];
+        int[] above = rows[i - 1];
+        char c = key.charAt(i - 1);
+        row[0] = i;
+        int min = i;
+        for (int j = 1; j <= term.length(); j++) {
+            int cost = c == term.charAt(j - 1) ? 0 : 1;
+            int best = Math.min(Math.min(above[j] + 1, row[j - 1] + 1), above[j - 1] + cost);
+            if (i > 1 && j > 1 && c == term.charAt(j - 2)
+                    && key.charAt(i - 2) == term.charAt(j - 1)) {
+                best = Math.min(best, rows[i - 2][j - 2] + 1); // adjacent swap
+            }
+            row[j] = best;
+            min = Math.min(min, best);
+        }
+        return min;
+    }
+
+    /**
+     * Return the length of the longest common prefix of two strings
+     */
+    private static int commonPrefix(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < length && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Return the number of documents related to a key of the index
+     */
+    private static int documentCount(SearchIndex<String> index, String key) {
+        return index.getDocuments() != null
+                ? index.findPostings(key).size()
+                : index.findDataList(key).size();
+    }
+
+    /**
+     * Key found by a fuzzy search
+     */
+    public static class Match {
+        private final String key;
+        private final int distance;
+        private final int documentCount;
+
+        /**
+         * Constructor used by search
+         *
+         * @param key           Matching key
+         * @param distance      Edits between the key and the term
+         * @param documentCount Number of documents related to the key
+         */
+        Match(String key, int distance, int documentCount) {
+            this.key = key;
+            this.distance = distance;
+            this.documentCount = documentCount;
+        }
+
+        /**
+         * Return the matching key
+         *
+         * @return The key
+         */
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * Return the number of edits between the key and the term
+         *
+         * @return The edit distance
+         */
+        public int getDistance() {
+            return distance;
+        }
+
+        /**
+         * Return the number of documents related to the key
+         *
+         * @return The document count
+         */
+        public int getDocumentCount() {
+            return documentCount;
+        }
+
+        @Override
+        public String toString() {
+            return key;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import java.util.*;
+class FuzzySearchTester {
+
+    private static List<String> keys(List<FuzzySearch.Match> matches) {
+        List<String> keys = new ArrayList<>();
+        for (FuzzySearch.Match match : matches) {
+            keys.add(match.getKey());
+        }
+        return keys;
+    }
+
+    /**
+     * Random string from a small alphabet, so near misses are common
+     */
+    private static String randomWord(Random random, int maxLength) {
+        StringBuilder word = new StringBuilder();
+        int length = random.nextInt(maxLength + 1);
+        for (int i = 0; i < length; i++) {
+            word.append("abc-".charAt(random.nextInt(4)));
+        }
+        return word.toString();
+    }
+
+    @Test
+    void testDistance() {
+        assertEquals(0, FuzzySearch.distance("emma-stone", "emma-stone"));
+        assertEquals(1, FuzzySearch.distance("scarlett-johansson", "scarlet-johansson"));
+        assertEquals(1, FuzzySearch.distance("emma-stone", "emma-stoen")); // swap
+        assertEquals(2, FuzzySearch.distance("emma-stone", "ema-ston"));
+        assertEquals(3, FuzzySearch.distance("", "abc"));
+        assertEquals(3, FuzzySearch.distance("abc", ""));
+    }
+
+    @Test
+    void testMatchesBruteForce() {
+        Random random = new Random(24);
+        BSTree<String> tree = new BSTree<>(true);
+        RadixIndex radix = new RadixIndex();
+        for (int i = 0; i < 3000; i++) {
+            String key = randomWord(random, 8);
+            tree.insertOrAppend(key, "d" + i);
+            radix.insertOrAppend(key, "d" + i);
+        }
+
+        for (int i = 0; i < 300; i++) {
+            String term = randomWord(random, 8);
+            int maxDistance = random.nextInt(FuzzySearch.MAX_DISTANCE + 1);
+            Set<String> expected = new TreeSet<>();
+            for (String key : tree) {
+                if (FuzzySearch.distance(key, term) <= maxDistance) {
+                    expected.add(key);
+                }
+            }
+
+            List<FuzzySearch.Match> matches = FuzzySearch.search(tree, term, maxDistance);
+            assertEquals(expected, new TreeSet<>(keys(matches)));
+            assertEquals(keys(matches), keys(FuzzySearch.search(radix, term, maxDistance)));
+            for (int j = 0; j < matches.size(); j++) {
+                FuzzySearch.Match match = matches.get(j);
+                assertEquals(FuzzySearch.distance(match.getKey(), term), match.getDistance());
+                assertEquals(tree.findDataList(match.getKey()).size(), match.getDocumentCount());
+                if (j > 0) {
+                    assertTrue(matches.get(j - 1).getDistance() <= match.getDistance());
+                }
+            }
+        }
+    }
+
+    @Test
+    void testRanking() {
+        BSTree<String> tree = new BSTree<String>(true, new DocumentTable<String>());
+        tree.insertOrAppend("emma-stone", "zombieland");
+        tree.insertOrAppend("emma-stoner", "a");
+        tree.insertOrAppend("emma-stoner", "b");
+        tree.insertOrAppend("emma-stones", "c");
+        tree.insertOrAppend("emma-watson", "d");
+
+        // one edit each: the key with more documents first, then alphabetical
+        assertEquals(Arrays.asList("emma-stone", "emma-stoner", "emma-stones"),
+                keys(FuzzySearch.search(tree, "emma-stone", 1)));
+        assertEquals(Arrays.asList("emma-stoner", "emma-stone", "emma-stones"),
+                keys(FuzzySearch.search(tree, "emma-stonex", 1)));
+        assertEquals(Collections.emptyList(), keys(FuzzySearch.search(tree, "xyz", 2)));
+        assertThrows(IllegalArgumentException.class,
+                () -> FuzzySearch.search(tree, "emma", FuzzySearch.MAX_DISTANCE + 1));
+    }
+}
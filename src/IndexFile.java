@@ -0,0 +1,619 @@
+/*
+ * Name: Felix Najera
+ * PID:  A17618969
+ */
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Compact, versioned binary file holding built search trees (keys, postings
+ * and the shared document table) so they do not have to be rebuilt from the
+ * text data file on every run. An opened file is searched in place through a
+ * memory map.
+ *
+ * Layout (all ints big-endian):
+ * <pre>
+ * header:   magic, version, source size (long), source modification time
+ *           (long), source checksum (long), payload checksum (long),
+ *           number of trees
+ * payload:  document block, then one tree block per tree
+ * block:    count n, n + 1 offsets into the data, data
+ * </pre>
+ * The document block holds the UTF-8 titles by id. A tree block is a key
+ * block of UTF-8 keys in ascending order, followed by a posting block whose
+ * i-th entry holds the postings of key i as a varint count and varint gaps
+ * between ids. Offsets let lookups binary-search the keys without parsing.
+ * The source fields identify the data file the trees were built from, so a
+ * stale index can be detected without reading the data file when its size
+ * and modification time are unchanged (see isBuiltFrom); the payload
+ * checksum catches a damaged file. Files are limited to 2 GB.
+ * <p>
+ * Java cannot unmap a file on demand; closing an index drops its references
+ * to the mapping, so an index that is not used, e.g. a stale one about to be
+ * rewritten, does not keep the old file mapped beyond the next collection.
+ *
+ * @author Felix Najera
+ * @since  8/27/24
+ */
+public class IndexFile implements Closeable {
+
+    private static final int MAGIC = 0x42535449; // "BSTI"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 8 + 8 + 4;
+
+    private final Source source;
+    private final DocumentTable<String> documents;
+    private List<MappedTree> trees; // null once closed
+
+    /**
+     * Constructor used by open
+     *
+     * @param source    Data file the trees came from
+     * @param documents Document table read from the file
+     * @param trees     Mapped trees
+     */
+    private IndexFile(Source source, DocumentTable<String> documents,
+            List<MappedTree> trees) {
+        this.source = source;
+        this.documents = documents;
+        this.trees = Collections.unmodifiableList(trees);
+    }
+
+    /* * * * * Checksums * * * * */
+
+    /**
+     * Return the CRC32 of a file's contents
+     *
+     * @param file File to checksum
+     * @return The checksum
+     * @throws IOException If the file cannot be read
+     */
+    public static long checksum(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long start = 0; start < size; start += Integer.MAX_VALUE) {
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, start,
+                        Math.min(Integer.MAX_VALUE, size - start)));
+            }
+        }
+        return crc.getValue();
+    }
+
+    /* * * * * Writing * * * * */
+
+    /**
+     * Write trees to an index file. The trees must be in posting-list mode
+     * and share one DocumentTable.
+     *
+     * @param file   File to write
+     * @param source Data file the trees were built from, as it was before
+     *               they were built
+     * @param trees  Trees to store, in search kind order
+     * @throws IOException              If writing fails
+     * @throws IllegalArgumentException If the trees do not share a table
+     */
+    public static void write(Path file, Source source,
+            List<? extends SearchIndex<String>> trees) throws IOException {
+        DocumentTable<String> documents = trees.isEmpty() ? null : trees.get(0).getDocuments();
+        for (SearchIndex<String> tree : trees) {
+            if (documents == null || tree.getDocuments() != documents) {
+                throw new IllegalArgumentException(
+                        "Trees must be in posting-list mode and share one DocumentTable");
+            }
+        }
+
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        List<byte[]> titles = new ArrayList<>();
+        for (int id = 0; id < documents.size(); id++) {
+            titles.add(documents.get(id).getBytes(StandardCharsets.UTF_8));
+        }
+        writeBlock(payload, titles);
+
+        for (SearchIndex<String> tree : trees) {
+            List<byte[]> keys = new ArrayList<>();
+            List<byte[]> postings = new ArrayList<>();
+            Iterator<String> treeKeys = tree.range(null, null);
+            while (treeKeys.hasNext()) {
+                String key = treeKeys.next();
+                keys.add(key.getBytes(StandardCharsets.UTF_8));
+                postings.add(encodePostings(tree.findPostings(key)));
+            }
+            writeBlock(payload, keys);
+            writeBlock(payload, postings);
+        }
+
+        byte[] body = payload.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(VERSION).putLong(source.getSize())
+                .putLong(source.getModified()).putLong(source.getChecksum())
+                .putLong(crc.getValue()).putInt(trees.size());
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+            out.write(header.array());
+            out.write(body);
+        }
+        // never leave a half-written index under the real name
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Write a block: count, count + 1 offsets, then the entries back to back
+     *
+     * @param out     Destination
+     * @param entries Entries of the block
+     * @throws IOException If writing fails
+     */
+    private static void writeBlock(ByteArrayOutputStream out, List<byte[]> entries)
+            throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(entries.size());
+        int offset = 0;
+        data.writeInt(offset);
+        for (byte[] entry : entries) {
+            offset += entry.length;
+            data.writeInt(offset);
+        }
+        for (byte[] entry : entries) {
+            data.write(entry);
+        }
+    }
+
+    /**
+     * Encode postings as a varint count followed by varint gaps
+     *
+     * @param postings Sorted ids
+     * @return The encoded bytes
+     */
+    private static byte[] encodePostings(PostingList postings) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarint(out, postings.size());
+        int previous = 0;
+        for (int i = 0; i < postings.size(); i++) {
+            writeVarint(out, postings.get(i) - previous);
+            previous = postings.get(i);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Write a non-negative int 7 bits at a time, low bits first
+     *
+     * @param out   Destination
+     * @param value Value to write
+     */
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /* * * * * Reading * * * * */
+
+    /**
+     * Open an index file and map it into memory
+     *
+     * @param file File to open
+     * @return The opened index
+     * @throws IOException If the file cannot be read, is not an index file,
+     *                     has another version or fails its checksum
+     */
+    public static IndexFile open(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is not an index file");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException(file + " is not an index file");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException(file + " has index version " + buffer.getInt(4)
+                    + ", expected " + VERSION);
+        }
+        Source source = new Source(buffer.getLong(8), buffer.getLong(16), buffer.getLong(24));
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(HEADER_BYTES, buffer.limit() - HEADER_BYTES));
+        if (crc.getValue() != buffer.getLong(32)) {
+            throw new IOException(file + " is damaged (checksum mismatch)");
+        }
+        int treeCount = buffer.getInt(40);
+
+        try {
+            Block titles = new Block(buffer, HEADER_BYTES);
+            DocumentTable<String> documents = new DocumentTable<>();
+            for (int id = 0; id < titles.count; id++) {
+                documents.intern(titles.getString(id));
+            }
+
+            List<MappedTree> trees = new ArrayList<>();
+            int position = titles.end;
+            for (int i = 0; i < treeCount; i++) {
+                Block keys = new Block(buffer, position);
+                Block postings = new Block(buffer, keys.end);
+                trees.add(new MappedTree(keys, postings, documents));
+                position = postings.end;
+            }
+            return new IndexFile(source, documents, trees);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException(file + " is damaged", e);
+        }
+    }
+
+    /**
+     * Return the checksum of the data file the index was built from
+     *
+     * @return The source checksum
+     */
+    public long getSourceChecksum() {
+        return source.getChecksum();
+    }
+
+    /**
+     * Return true if the index was built from the current contents of a data
+     * file. A file whose size and modification time match the ones recorded
+     * is taken as unchanged without being read; only a file that was touched
+     * but kept its size is checksummed.
+     *
+     * @param file Data file
+     * @return True if the index is current for the file
+     * @throws IOException If the file cannot be read (NoSuchFileException if
+     *                     it does not exist)
+     */
+    public boolean isBuiltFrom(Path file) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        if (attributes.size() != source.getSize()) {
+            return false;
+        }
+        return attributes.lastModifiedTime().toMillis() == source.getModified()
+                || checksum(file) == source.getChecksum();
+    }
+
+    /**
+     * Return the document table shared by the trees
+     *
+     * @return The document table
+     */
+    public DocumentTable<String> getDocuments() {
+        return documents;
+    }
+
+    /**
+     * Return the stored trees, in the order they were written
+     *
+     * @return The mapped trees
+     * @throws IllegalStateException If the index is closed
+     */
+    public List<MappedTree> getTrees() {
+        if (trees == null) {
+            throw new IllegalStateException("Index file is closed");
+        }
+        return trees;
+    }
+
+    /**
+     * Release the index's references to the mapped file. Trees already
+     * returned by getTrees stay usable; the index cannot hand out more.
+     */
+    @Override
+    public void close() {
+        trees = null;
+    }
+
+    /**
+     * Identity of the data file an index was built from: its size,
+     * modification time and checksum
+     */
+    public static class Source {
+        private final long size;
+        private final long modified; // milliseconds since the epoch
+        private final long checksum;
+
+        /**
+         * Constructor that records already known values
+         *
+         * @param size     File size in bytes
+         * @param modified Modification time in milliseconds since the epoch
+         * @param checksum CRC32 of the contents
+         */
+        public Source(long size, long modified, long checksum) {
+            this.size = size;
+            this.modified = modified;
+            this.checksum = checksum;
+        }
+
+        /**
+         * Record the current size, modification time and checksum of a file
+         *
+         * @param file Data file
+         * @return Its identity
+         * @throws IOException If the file cannot be read (NoSuchFileException
+         *                     if it does not exist)
+         */
+        public static Source of(Path file) throws IOException {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return new Source(attributes.size(), attributes.lastModifiedTime().toMillis(),
+                    checksum(file));
+        }
+
+        /**
+         * Return the file size
+         *
+         * @return Size in bytes
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Return the modification time
+         *
+         * @return Milliseconds since the epoch
+         */
+        public long getModified() {
+            return modified;
+        }
+
+        /**
+         * Return the checksum of the contents
+         *
+         * @return The CRC32
+         */
+        public long getChecksum() {
+            return checksum;
+        }
+    }
+
+    /**
+     * A block of variable-length entries inside the mapped file
+     */
+    private static class Block {
+        private final ByteBuffer buffer;
+        private final int count; // number of entries
+        private final int offsets; // file position of the offset table
+        private final int data; // file position of the first entry
+        private final int end; // file position just past the block
+
+        Block(ByteBuffer buffer, int position) {
+            this.buffer = buffer;
+            count = buffer.getInt(position);
+            offsets = position + 4;
+            data = offsets + 4 * (count + 1);
+            end = data + buffer.getInt(offsets + 4 * count);
+            Objects.checkFromToIndex(position, end, buffer.limit());
+        }
+
+        /**
+         * Return the file position where an entry starts
+         */
+        int start(int index) {
+            return data + buffer.getInt(offsets + 4 * index);
+        }
+
+        /**
+         * Compare an entry with UTF-8 bytes in place, in String.compareTo
+         * order
+         *
+         * @param index  Entry to compare
+         * @param target UTF-8 bytes to compare with
+         * @return Negative, zero or positive as the entry is less than, equal
+         *         to or greater than the target
+         */
+        int compareTo(int index, byte[] target) {
+            int start = start(index);
+            int length = start(index + 1) - start;
+            for (int i = 0; i < Math.min(length, target.length); i++) {
+                int a = buffer.get(start + i) & 0xff;
+                int b = target[i] & 0xff;
+                if (a != b) {
+                    // UTF-8 orders by code point but String by UTF-16 unit, which
+                    // puts U+E000 to U+FFFF (lead 0xEE, 0xEF) after the
+                    // supplementary characters (lead 0xF0 and up)
+                    if (a >= 0xEE && b >= 0xEE && (a >= 0xF0) != (b >= 0xF0)) {
+                        return a >= 0xF0 ? -1 : 1;
+                    }
+                    return a - b;
+                }
+            }
+            return length - target.length;
+        }
+
+        /**
+         * Decode an entry as UTF-8
+         */
+        String getString(int index) {
+            int start = start(index);
+            byte[] bytes = new byte[start(index + 1) - start];
+            buffer.get(start, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * A stored tree, searched in place: keys are binary-searched through the
+     * offset table and postings are decoded on demand
+     */
+    public static class MappedTree implements SearchIndex<String>, Iterable<String> {
+        private final Block keys;
+        private final Block postings;
+        private final DocumentTable<String> documents;
+
+        MappedTree(Block keys, Block postings, DocumentTable<String> documents) {
+            this.keys = keys;
+            this.postings = postings;
+            this.documents = documents;
+        }
+
+        /**
+         * Return the position of a key
+         *
+         * @param key Target key
+         * @return The key's index, negative if not found
+         * @throws NullPointerException If key is null
+         */
+        private int indexOf(String key) {
+            if (key == null) {
+                throw new NullPointerException("Key cannot be null");
+            }
+            byte[] target = key.getBytes(StandardCharsets.UTF_8);
+            int low = 0;
+            int high = keys.count - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int compare = keys.compareTo(middle, target);
+                if (compare < 0) {
+                    low = middle + 1;
+                } else if (compare > 0) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -(low + 1);
+        }
+
+        @Override
+        public boolean findKey(String key) {
+            return indexOf(key) >= 0;
+        }
+
+        @Override
+        public List<String> findDataList(String key) {
+            PostingList keyPostings = findPostings(key);
+            return new AbstractList<String>() {
+                @Override
+                public String get(int index) {
+                    return documents.get(keyPostings.get(index));
+                }
+
+                @Override
+                public int size() {
+                    return keyPostings.size();
+                }
+            };
+        }
+
+        /**
+         * Decode the postings of a key into a read-only PostingList
+         *
+         * @param key Target key
+         * @return Read-only PostingList of key
+         * @throws NullPointerException     If key is null
+         * @throws IllegalArgumentException If key is not found
+         */
+        @Override
+        public PostingList findPostings(String key) {
+            int index = indexOf(key);
+            if (index < 0) {
+                throw new IllegalArgumentException("Key not found in the tree");
+            }
+
+            int[] position = {postings.start(index)};
+            int[] ids = new int[readVarint(postings.buffer, position)];
+            int previous = 0;
+            for (int i = 0; i < ids.length; i++) {
+                previous += readVarint(postings.buffer, position);
+                ids[i] = previous;
+            }
+            return PostingList.readOnly(ids);
+        }
+
+        /**
+         * Read a varint and advance the position
+         *
+         * @param buffer   Source
+         * @param position One-element holder of the read position
+         * @return The value
+         */
+        private static int readVarint(ByteBuffer buffer, int[] position) {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buffer.get(position[0]++);
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+
+        @Override
+        public Iterator<String> range(String lo, String hi) {
+            int from = lo == null ? 0 : lowerBound(lo);
+            int to = hi == null ? keys.count : Math.max(from, lowerBound(hi));
+            return new KeyIterator(from, to);
+        }
+
+        /**
+         * Return the position of the first key that is not less than 'key'
+         *
+         * @param key Bound
+         * @return The position
+         */
+        private int lowerBound(String key) {
+            int index = indexOf(key);
+            return index >= 0 ? index : -(index + 1);
+        }
+
+        @Override
+        public DocumentTable<String> getDocuments() {
+            return documents;
+        }
+
+        @Override
+        public int getSize() {
+            return keys.count;
+        }
+
+        /**
+         * Return an iterator over the keys in ascending order
+         *
+         * @return Key iterator
+         */
+        @Override
+        public Iterator<String> iterator() {
+            return new KeyIterator(0, keys.count);
+        }
+
+        /**
+         * Iterator over the keys at positions [next, end)
+         */
+        private class KeyIterator implements Iterator<String> {
+            private int next;
+            private final int end;
+
+            KeyIterator(int next, int end) {
+                this.next = next;
+                this.end = end;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next < end;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return keys.getString(next++);
+            }
+        }
+    }
+}
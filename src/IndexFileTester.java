@@ -0,0 +1,138 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+class IndexFileTester {
+
+    private List<BSTree<String>> trees;
+    private Path data;
+    private Path index;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        data = Paths.get("moviedata.txt");
+        trees = SearchEngineTester.newTrees(data.toString());
+        index = Files.createTempFile("movies", ".idx");
+        index.toFile().deleteOnExit();
+    }
+
+    @Test
+    void testRoundTrip() throws IOException {
+        IndexFile.write(index, IndexFile.Source.of(data), trees);
+        IndexFile opened = IndexFile.open(index);
+
+        assertEquals(IndexFile.checksum(data), opened.getSourceChecksum());
+        assertTrue(opened.isBuiltFrom(data));
+        assertEquals(trees.get(0).getDocuments().size(), opened.getDocuments().size());
+        assertEquals(trees.size(), opened.getTrees().size());
+        for (int kind = 0; kind < trees.size(); kind++) {
+            BSTSnapshot<String> expected = trees.get(kind).freeze();
+            IndexFile.MappedTree actual = opened.getTrees().get(kind);
+            assertEquals(expected.getSize(), actual.getSize());
+
+            Iterator<String> keys = actual.iterator();
+            for (String key : expected) {
+                assertEquals(key, keys.next());
+                assertTrue(actual.findKey(key));
+                assertEquals(expected.findDataList(key), actual.findDataList(key));
+                assertTrue(actual.findPostings(key).isReadOnly());
+            }
+            assertFalse(keys.hasNext());
+            List<String> expectedRange = new ArrayList<>();
+            expected.range("c", "m").forEachRemaining(expectedRange::add);
+            List<String> actualRange = new ArrayList<>();
+            actual.range("c", "m").forEachRemaining(actualRange::add);
+            assertEquals(expectedRange, actualRange);
+            assertFalse(actual.findKey("no-such-key"));
+            assertThrows(IllegalArgumentException.class,
+                    () -> actual.findPostings("no-such-key"));
+            assertThrows(NullPointerException.class, () -> actual.findKey(null));
+        }
+
+        // trees handed out before close stay usable
+        IndexFile.MappedTree actors = opened.getTrees().get(0);
+        opened.close();
+        assertThrows(IllegalStateException.class, opened::getTrees);
+        assertEquals(trees.get(0).getSize(), actors.getSize());
+    }
+
+    @Test
+    void testLoadTreesUsesAndRefreshesIndex() throws IOException {
+        Files.delete(index);
+        List<? extends SearchIndex<String>> built =
+                SearchEngine.loadTrees(data.toString(), index);
+        assertTrue(built.get(0) instanceof BSTree);
+        assertTrue(Files.exists(index));
+
+        List<? extends SearchIndex<String>> mapped =
+                SearchEngine.loadTrees(data.toString(), index);
+        assertTrue(mapped.get(0) instanceof IndexFile.MappedTree);
+
+        // an index built from other data is stale and gets rebuilt
+        IndexFile.Source current = IndexFile.Source.of(data);
+        IndexFile.write(index, new IndexFile.Source(current.getSize(),
+                current.getModified() - 1, current.getChecksum() + 1), trees);
+        assertTrue(SearchEngine.loadTrees(data.toString(), index).get(0) instanceof BSTree);
+        assertEquals(IndexFile.checksum(data), IndexFile.open(index).getSourceChecksum());
+
+        // a touched file with the same contents passes its checksum
+        IndexFile.write(index, new IndexFile.Source(current.getSize(),
+                current.getModified() - 1, current.getChecksum()), trees);
+        assertTrue(IndexFile.open(index).isBuiltFrom(data));
+        // an unchanged size and time are trusted without reading the file
+        IndexFile.write(index, new IndexFile.Source(current.getSize(),
+                current.getModified(), current.getChecksum() + 1), trees);
+        assertTrue(IndexFile.open(index).isBuiltFrom(data));
+        // a different size is stale without reading it either
+        IndexFile.write(index, new IndexFile.Source(current.getSize() + 1,
+                current.getModified(), current.getChecksum()), trees);
+        assertFalse(IndexFile.open(index).isBuiltFrom(data));
+
+        assertNull(SearchEngine.loadTrees("no-such-file.txt", index));
+    }
+
+    @Test
+    void testErrors() throws IOException {
+        Files.write(index, "not an index".getBytes());
+        assertThrows(IOException.class, () -> IndexFile.open(index));
+
+        IndexFile.write(index, new IndexFile.Source(0, 0, 0), trees);
+        byte[] bytes = Files.readAllBytes(index);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(index, bytes);
+        assertThrows(IOException.class, () -> IndexFile.open(index));
+
+        assertThrows(IllegalArgumentException.class, () -> IndexFile.write(index,
+                new IndexFile.Source(0, 0, 0), Arrays.asList(trees.get(0), new BSTree<String>())));
+    }
+
+    @Test
+    void testNonAsciiKeys() throws IOException {
+        // String order puts U+E000 to U+FFFF after supplementary characters,
+        // unlike plain UTF-8 byte order
+        DocumentTable<String> documents = new DocumentTable<>();
+        BSTree<String> tree = new BSTree<>(true, documents);
+        List<String> keys = Arrays.asList("amelie", "am\u00e9lie", "\ue000-private",
+                "\ud83c\udfac-clapper", "\uffee-halfwidth", "z");
+        for (String key : keys) {
+            tree.insertOrAppend(key, "movie-" + key);
+        }
+        IndexFile.write(index, new IndexFile.Source(0, 0, 0),
+                Arrays.asList(tree, new BSTree<>(true, documents)));
+        IndexFile.MappedTree mapped = IndexFile.open(index).getTrees().get(0);
+
+        List<String> sorted = new ArrayList<>(keys);
+        Collections.sort(sorted);
+        List<String> stored = new ArrayList<>();
+        mapped.forEach(stored::add);
+        assertEquals(sorted, stored);
+        for (String key : keys) {
+            assertTrue(mapped.findKey(key), key);
+            assertEquals(Arrays.asList("movie-" + key), mapped.findDataList(key));
+        }
+        assertFalse(mapped.findKey("\ue001"));
+        assertFalse(mapped.findKey("am"));
+    }
+}
@@ -0,0 +1,469 @@
+/*
+ * Name: Felix Najera
+ * PID:  A17618969
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Reader for the 5-line movie record format (title, cast, studios, rating,
+ * "-") that memory-maps the file and scans its bytes directly instead of
+ * going through Scanner and String.split. Keys are lowercased into a reused
+ * scratch buffer and looked up by their bytes in a small fixed-size cache, so
+ * frequent keys (ratings, studios, busy actors) cost no allocation.
+ *
+ * Tokenizing matches String.split(" ") on each line, and line endings
+ * ("\n" or "\r\n") are stripped as Scanner.nextLine does.
+ *
+ * A large file can be split into ranges of whole records (see split) and
+ * each range read by its own reader, in parallel; line numbers in errors
+ * still count from the start of the file.
+ *
+ * @author Felix Najera
+ * @since  8/27/24
+ */
+public class MovieFileReader implements Closeable {
+
+    private static final int RECORD_LINES = 5; // lines per movie record
+    private static final int MAX_REGION = 1 << 30; // bytes mapped at once
+    private static final int TOKEN_CACHE_SIZE = 1 << 14; // cached tokens, a power of 2
+
+    private final Path path;
+    private final FileChannel channel;
+    private final long endOffset; // file offset reading stops at
+    private final int regionSize; // largest region to map
+
+    private MappedByteBuffer region; // currently mapped part of the file
+    private long regionStart; // file offset of the region
+    private int position; // next unread byte within the region
+    private int lineStart; // current line, within the region
+    private int lineEnd; // end of the current line, without its terminator
+    private int lineNumber; // 1-based number of the current line
+    private byte[] scratch; // lowercased bytes of the current token
+
+    // direct-mapped cache from lowercased token bytes to their String; a
+    // colliding token simply replaces the cached one
+    private final byte[][] tokenBytes;
+    private final String[] tokenStrings;
+    private final int[] tokenHashes;
+
+    /**
+     * Constructor that opens and maps a movie data file
+     *
+     * @param fileName Name of the file
+     * @throws IOException If the file cannot be opened (NoSuchFileException if
+     *                     it does not exist)
+     */
+    public MovieFileReader(String fileName) throws IOException {
+        this(Paths.get(fileName), MAX_REGION);
+    }
+
+    /**
+     * Constructor that maps at most 'regionSize' bytes of the file at a time
+     *
+     * @param path       File to read
+     * @param regionSize Largest region to map; also the longest allowed line
+     * @throws IOException If the file cannot be opened
+     */
+    MovieFileReader(Path path, int regionSize) throws IOException {
+        this(path, 0, Long.MAX_VALUE, 1, regionSize);
+    }
+
+    /**
+     * Constructor that reads only the bytes from 'start' to 'end'
+     *
+     * @param path       File to read
+     * @param start      File offset of the first record
+     * @param end        File offset to stop at, clamped to the file size
+     * @param firstLine  Line number of the first record, for error messages
+     * @param regionSize Largest region to map; also the longest allowed line
+     * @throws IOException If the file cannot be opened
+     */
+    private MovieFileReader(Path path, long start, long end, int firstLine, int regionSize)
+            throws IOException {
+        this.path = path;
+        this.regionSize = regionSize;
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        endOffset = Math.min(end, channel.size());
+        lineNumber = firstLine - 1;
+        tokenBytes = new byte[TOKEN_CACHE_SIZE][];
+        tokenStrings = new String[TOKEN_CACHE_SIZE];
+        tokenHashes = new int[TOKEN_CACHE_SIZE];
+        scratch = new byte[64];
+        map(Math.min(start, endOffset));
+    }
+
+    /**
+     * Split a file into about 'parts' ranges that each hold whole records.
+     * Lines are counted in parallel to find where the records start, since
+     * a record is only known by its position in the file.
+     *
+     * @param path  File to split
+     * @param parts Number of ranges wanted
+     * @return The ranges in file order, together covering the whole file
+     * @throws IOException If the file cannot be read (NoSuchFileException if
+     *                     it does not exist)
+     */
+    static List<Range> split(Path path, int parts) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long[] bounds = new long[parts + 1];
+            for (int i = 0; i <= parts; i++) {
+                bounds[i] = size / parts * i + size % parts * i / parts;
+            }
+            long[] newlines;
+            try {
+                newlines = IntStream.range(0, parts).parallel()
+                        .mapToLong(i -> countNewlines(channel, bounds[i], bounds[i + 1]))
+                        .toArray();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            List<Range> ranges = new ArrayList<>();
+            long start = 0;
+            long line = 0; // 0-based index of the line at start
+            long linesBefore = 0; // newlines before bounds[i]
+            for (int i = 1; i < parts; i++) {
+                linesBefore += newlines[i - 1];
+                // first record starting at or after the bound
+                long next = bounds[i];
+                long nextLine = linesBefore;
+                if (!isLineStart(channel, next)) {
+                    next = nextLineStart(channel, next, size);
+                    nextLine++;
+                }
+                while (nextLine % RECORD_LINES != 0 && next < size) {
+                    next = nextLineStart(channel, next, size);
+                    nextLine++;
+                }
+                if (next > start) {
+                    ranges.add(new Range(path, start, next, Math.toIntExact(line + 1)));
+                    start = next;
+                    line = nextLine;
+                }
+            }
+            ranges.add(new Range(path, start, size, Math.toIntExact(line + 1)));
+            return ranges;
+        }
+    }
+
+    /**
+     * Count the '\n' bytes from 'start' to 'end'
+     *
+     * @param channel Open file
+     * @param start   First offset
+     * @param end     Offset to stop at
+     * @return The number of newlines
+     * @throws UncheckedIOException If mapping fails
+     */
+    private static long countNewlines(FileChannel channel, long start, long end) {
+        long count = 0;
+        try {
+            for (long offset = start; offset < end; offset += MAX_REGION) {
+                MappedByteBuffer part = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+                        Math.min(MAX_REGION, end - offset));
+                for (int i = 0; i < part.limit(); i++) {
+                    if (part.get(i) == '\n') {
+                        count++;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return count;
+    }
+
+    /**
+     * Return true if a line starts at a file offset
+     *
+     * @param channel Open file
+     * @param offset  File offset
+     * @return True at the start of the file or right after a '\n'
+     * @throws IOException If reading fails
+     */
+    private static boolean isLineStart(FileChannel channel, long offset) throws IOException {
+        if (offset == 0) {
+            return true;
+        }
+        ByteBuffer previous = ByteBuffer.allocate(1);
+        channel.read(previous, offset - 1);
+        return previous.get(0) == '\n';
+    }
+
+    /**
+     * Return the offset of the line after the one containing 'offset'
+     *
+     * @param channel Open file
+     * @param offset  File offset
+     * @param size    File size
+     * @return The offset just past the next '\n', size if there is none
+     * @throws IOException If reading fails
+     */
+    private static long nextLineStart(FileChannel channel, long offset, long size)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 13);
+        while (offset < size) {
+            buffer.clear();
+            int read = channel.read(buffer, offset);
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return offset + i + 1;
+                }
+            }
+            offset += read;
+        }
+        return size;
+    }
+
+    /**
+     * Map the region starting at a file offset
+     *
+     * @param start File offset
+     * @throws IOException If mapping fails
+     */
+    private void map(long start) throws IOException {
+        long length = Math.min(regionSize, endOffset - start);
+        region = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        regionStart = start;
+        position = 0;
+    }
+
+    /**
+     * Advance to the next line, remapping if it crosses the end of the region
+     *
+     * @return False at end of file
+     * @throws IOException If mapping fails or a line is longer than a region
+     */
+    private boolean nextLine() throws IOException {
+        if (regionStart + position >= endOffset) {
+            return false;
+        }
+        int end = position;
+        while (true) {
+            int limit = region.limit();
+            while (end < limit && region.get(end) != '\n') {
+                end++;
+            }
+            if (end < limit || regionStart + limit == endOffset) {
+                break;
+            }
+            if (position == 0) {
+                throw new IOException("Line " + (lineNumber + 1) + " of " + path
+                        + " is longer than " + regionSize + " bytes");
+            }
+            // the line runs past the region: map again starting at the line
+            end -= position;
+            map(regionStart + position);
+        }
+
+        lineStart = position;
+        lineEnd = end;
+        position = end < region.limit() ? end + 1 : end;
+        if (lineEnd > lineStart && region.get(lineEnd - 1) == '\r') {
+            lineEnd--;
+        }
+        lineNumber++;
+        return true;
+    }
+
+    /**
+     * Read the next record
+     *
+     * @return The record, null at end of file
+     * @throws IOException            If reading the file fails
+     * @throws NoSuchElementException If the file ends inside a record
+     */
+    public MovieRecord next() throws IOException {
+        if (!nextLine()) {
+            return null;
+        }
+        int recordLine = lineNumber;
+        String title = decode(trimStart(lineStart, lineEnd), trimEnd(lineStart, lineEnd));
+
+        requireLine(recordLine);
+        String[] cast = splitTokens();
+        requireLine(recordLine);
+        String[] studios = splitTokens();
+        requireLine(recordLine);
+        String rating = token(trimStart(lineStart, lineEnd), trimEnd(lineStart, lineEnd));
+        requireLine(recordLine); // trailing "-"
+
+        return new MovieRecord(title, cast, studios, rating);
+    }
+
+    /**
+     * Advance to the next line of a record, failing if the file ends
+     *
+     * @param recordLine Line the record started on
+     * @throws IOException            If reading the file fails
+     * @throws NoSuchElementException If there is no next line
+     */
+    private void requireLine(int recordLine) throws IOException {
+        if (!nextLine()) {
+            throw new NoSuchElementException("Truncated record at line " + recordLine
+                    + " of " + path + ": expected " + RECORD_LINES + " lines, found "
+                    + (lineNumber - recordLine + 1));
+        }
+    }
+
+    /**
+     * Split the current line on ' ' as String.split(" ") does: empty tokens
+     * between spaces are kept, trailing ones are dropped, and a line without
+     * spaces is a single token
+     *
+     * @return The lowercased tokens
+     */
+    private String[] splitTokens() {
+        ArrayList<String> tokens = new ArrayList<>();
+        int start = lineStart;
+        boolean sawSpace = false;
+        for (int i = lineStart; i < lineEnd; i++) {
+            if (region.get(i) == ' ') {
+                tokens.add(token(start, i));
+                start = i + 1;
+                sawSpace = true;
+            }
+        }
+        tokens.add(token(start, lineEnd));
+        if (sawSpace) {
+            while (!tokens.isEmpty() && tokens.get(tokens.size() - 1).isEmpty()) {
+                tokens.remove(tokens.size() - 1);
+            }
+        }
+        return tokens.toArray(new String[0]);
+    }
+
+    /**
+     * Return the first position in [start, end) that String.trim would keep
+     *
+     * @param start Start of the range
+     * @param end   End of the range
+     * @return The trimmed start
+     */
+    private int trimStart(int start, int end) {
+        while (start < end && (region.get(start) & 0xff) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    /**
+     * Return the end of [start, end) after String.trim
+     *
+     * @param start Start of the range
+     * @param end   End of the range
+     * @return The trimmed end
+     */
+    private int trimEnd(int start, int end) {
+        while (end > start && (region.get(end - 1) & 0xff) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Decode a range of the region as UTF-8
+     *
+     * @param start Start of the range
+     * @param end   End of the range
+     * @return The decoded string
+     */
+    private String decode(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        region.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Lowercase a token into the scratch buffer and return it as a String,
+     * reusing the cached String if the same token was seen recently. ASCII is
+     * lowercased byte by byte; tokens with other characters go through
+     * String.toLowerCase.
+     *
+     * @param start Start of the token
+     * @param end   End of the token
+     * @return The lowercased token
+     */
+    private String token(int start, int end) {
+        int length = end - start;
+        if (length > scratch.length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        int hash = 0;
+        boolean ascii = true;
+        for (int i = 0; i < length; i++) {
+            byte b = region.get(start + i);
+            if (b >= 'A' && b <= 'Z') {
+                b += 'a' - 'A';
+            } else if (b < 0) {
+                ascii = false;
+            }
+            scratch[i] = b;
+            hash = 31 * hash + b;
+        }
+
+        // scramble the hash: keys sharing long prefixes differ in the high bits
+        int mixed = hash * 0x9E3779B9;
+        int slot = (mixed ^ (mixed >>> 16)) & (TOKEN_CACHE_SIZE - 1);
+        byte[] cached = tokenBytes[slot];
+        if (cached != null && tokenHashes[slot] == hash
+                && Arrays.equals(cached, 0, cached.length, scratch, 0, length)) {
+            return tokenStrings[slot];
+        }
+
+        byte[] bytes = Arrays.copyOf(scratch, length);
+        String token = new String(bytes, StandardCharsets.UTF_8);
+        if (!ascii) {
+            token = token.toLowerCase();
+        }
+        tokenBytes[slot] = bytes;
+        tokenStrings[slot] = token;
+        tokenHashes[slot] = hash;
+        return token;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Part of a file holding whole records, as returned by split
+     */
+    static class Range {
+        private final Path path;
+        private final long start;
+        private final long end;
+        private final int firstLine;
+
+        Range(Path path, long start, long end, int firstLine) {
+            this.path = path;
+            this.start = start;
+            this.end = end;
+            this.firstLine = firstLine;
+        }
+
+        /**
+         * Open a reader over the records of this range
+         *
+         * @return The reader
+         * @throws IOException If the file cannot be opened
+         */
+        MovieFileReader open() throws IOException {
+            return new MovieFileReader(path, start, end, firstLine, MAX_REGION);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+class MovieFileReaderTester {
+
+    /**
+     * Write 'content' to a temporary file
+     */
+    private static Path write(String content) throws IOException {
+        Path file = Files.createTempFile("movies", ".txt");
+        file.toFile().deleteOnExit();
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    /**
+     * Read every record of a file with the given region size
+     */
+    private static List<MovieRecord> readAll(Path file, int regionSize) throws IOException {
+        List<MovieRecord> records = new ArrayList<>();
+        try (MovieFileReader reader = new MovieFileReader(file, regionSize)) {
+            MovieRecord record;
+            while ((record = reader.next()) != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Assert that two records hold the same fields
+     */
+    private static void assertSameRecord(MovieRecord expected, MovieRecord actual) {
+        assertEquals(expected.getTitle(), actual.getTitle());
+        for (int kind = 0; kind < 3; kind++) {
+            assertArrayEquals(expected.getKeys(kind), actual.getKeys(kind));
+        }
+    }
+
+    @Test
+    void testMatchesSplitSemantics() throws IOException {
+        String content = "  Iron-Man-2 \n"
+                + "Robert-Downey-Jr  Scarlett-Johansson \n"
+                + " Paramount\n"
+                + " PG13 \n"
+                + "-\n"
+                + "Am\u00e9lie\r\n"
+                + "AUDREY-TAUTOU \u00c9MILE\r\n"
+                + "\r\n"
+                + "R\r\n"
+                + "-";
+        List<MovieRecord> records = readAll(write(content), 1 << 20);
+
+        assertEquals(2, records.size());
+        assertSameRecord(MovieRecord.parse("  Iron-Man-2 ",
+                "Robert-Downey-Jr  Scarlett-Johansson ", " Paramount", " PG13 "),
+                records.get(0));
+        assertSameRecord(MovieRecord.parse("Am\u00e9lie", "AUDREY-TAUTOU \u00c9MILE", "", "R"),
+                records.get(1));
+        assertArrayEquals(new String[] {"robert-downey-jr", "", "scarlett-johansson"},
+                records.get(0).getKeys(0));
+        // repeated keys come back as the same cached String
+        List<MovieRecord> twice = readAll(write(content + "\n" + content), 1 << 20);
+        assertSame(twice.get(0).getKeys(0)[0], twice.get(2).getKeys(0)[0]);
+    }
+
+    @Test
+    void testSmallRegionsMatchWholeFile() throws IOException {
+        Path file = Paths.get("moviedata.txt");
+        List<MovieRecord> whole = readAll(file, 1 << 20);
+        List<MovieRecord> chunked = readAll(file, 200); // forces many remaps
+
+        assertEquals(whole.size(), chunked.size());
+        for (int i = 0; i < whole.size(); i++) {
+            assertSameRecord(whole.get(i), chunked.get(i));
+        }
+    }
+
+    @Test
+    void testSplitRangesMatchWholeFile() throws IOException {
+        Path file = Paths.get("moviedata.txt");
+        List<MovieRecord> whole = readAll(file, 1 << 20);
+        for (int parts : new int[] {1, 2, 7, 50, 5000}) {
+            List<MovieRecord> split = new ArrayList<>();
+            for (MovieFileReader.Range range : MovieFileReader.split(file, parts)) {
+                try (MovieFileReader reader = range.open()) {
+                    MovieRecord record;
+                    while ((record = reader.next()) != null) {
+                        split.add(record);
+                    }
+                }
+            }
+            assertEquals(whole.size(), split.size());
+            for (int i = 0; i < whole.size(); i++) {
+                assertSameRecord(whole.get(i), split.get(i));
+            }
+        }
+
+        // a truncated last record still names its line in the whole file
+        Path truncated = write("chef\njon-favreau\nopen-road\nR\n-\nsolo\nalden\n");
+        List<MovieFileReader.Range> ranges = MovieFileReader.split(truncated, 3);
+        MovieFileReader last = ranges.get(ranges.size() - 1).open();
+        NoSuchElementException error = assertThrows(NoSuchElementException.class, () -> {
+            while (last.next() != null) {
+                continue;
+            }
+        });
+        last.close();
+        assertTrue(error.getMessage().contains("line 6"), error.getMessage());
+    }
+
+    @Test
+    void testErrors() throws IOException {
+        NoSuchElementException truncated = assertThrows(NoSuchElementException.class,
+                () -> readAll(write("chef\njon-favreau\nopen-road\nR\n-\nsolo\nalden\n"), 1 << 20));
+        assertTrue(truncated.getMessage().contains("line 6"), truncated.getMessage());
+
+        assertThrows(IOException.class,
+                () -> readAll(write("a-very-long-title\nx\ny\nr\n-\n"), 8));
+        assertThrows(NoSuchFileException.class, () -> new MovieFileReader("no-such-file.txt"));
+        assertTrue(readAll(write(""), 1 << 20).isEmpty());
+    }
+}
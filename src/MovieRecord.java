@@ -0,0 +1,75 @@
+/*
+ * Name: Felix Najera
+ * PID:  A17618969
+ */
+
+/**
+ * One parsed movie record of the data file: title, cast, studios and rating.
+ * Cast, studio and rating keys are lowercased, ready to be indexed.
+ *
+ * @author Felix Najera
+ * @since  8/27/24
+ */
+public class MovieRecord {
+
+    private final String title;
+    private final String[][] keys; // keys by search kind: cast, studios, rating
+
+    /**
+     * Constructor that initializes a record from already parsed fields
+     *
+     * @param title   Movie title
+     * @param cast    Lowercased actors
+     * @param studios Lowercased studios
+     * @param rating  Lowercased rating
+     */
+    public MovieRecord(String title, String[] cast, String[] studios, String rating) {
+        this.title = title;
+        this.keys = new String[][] {cast, studios, {rating}};
+    }
+
+    /**
+     * Parse the first four lines of a record (the trailing "-" line is not
+     * needed)
+     *
+     * @param titleLine  Movie title
+     * @param castLine   Space separated actors
+     * @param studioLine Space separated studios
+     * @param ratingLine Rating
+     * @return The parsed record
+     */
+    public static MovieRecord parse(
+            String titleLine, String castLine, String studioLine, String ratingLine
+    ) {
+        String[] cast = castLine.split(" ");
+        for (int i = 0; i < cast.length; i++) {
+            cast[i] = cast[i].toLowerCase();
+        }
+        String[] studios = studioLine.split(" ");
+        for (int i = 0; i < studios.length; i++) {
+            studios[i] = studios[i].toLowerCase();
+        }
+        return new MovieRecord(titleLine.trim(), cast, studios,
+                ratingLine.trim().toLowerCase());
+    }
+
+    /**
+     * Return the movie title
+     *
+     * @return The title
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * Return the keys this movie is indexed under for a search kind: 0 for
+     * actors, 1 for studios and 2 for the rating
+     *
+     * @param searchKind Kind of search
+     * @return The keys, lowercased
+     */
+    public String[] getKeys(int searchKind) {
+        return keys[searchKind];
+    }
+}
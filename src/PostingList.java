@@ -0,0 +1,367 @@
+/*
+ * Name: Felix Najera
+ * PID:  A17618969
+ */
+
+import java.util.*;
+
+/**
+ * Sorted, growable list of document ids backed by an int[]. Costs 4 bytes
+ * per posting instead of a LinkedList node per entry. Like the LinkedList it
+ * replaces, the list keeps an id once per time it was added, so an actor
+ * listed twice in a cast, or two movies with the same title, still show up
+ * twice.
+ *
+ * @author Felix Najera
+ * @since  8/27/24
+ */
+public class PostingList {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private int[] ids; // sorted document ids, only the first size are used; may repeat
+    private int size; // number of postings
+    private final boolean readOnly; // reject modifications
+
+    /**
+     * 0-arg constructor that initializes an empty list
+     */
+    public PostingList() {
+        this(new int[INITIAL_CAPACITY], 0, false);
+    }
+
+    /**
+     * Constructor that wraps an existing array without copying it
+     *
+     * @param ids      Sorted ids
+     * @param size     Number of ids in use
+     * @param readOnly True to reject modifications
+     */
+    private PostingList(int[] ids, int size, boolean readOnly) {
+        this.ids = ids;
+        this.size = size;
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * Return a read-only list backed by 'ids'. The array is not copied, so the
+     * caller must not modify it afterwards.
+     *
+     * @param ids Sorted ids
+     * @return A read-only PostingList over ids
+     */
+    public static PostingList readOnly(int[] ids) {
+        return new PostingList(ids, ids.length, true);
+    }
+
+    /**
+     * Return true if the list rejects modifications
+     *
+     * @return True if read-only, false otherwise
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * Throw if the list is read-only
+     *
+     * @throws UnsupportedOperationException If the list is read-only
+     */
+    private void checkWritable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("PostingList is read-only");
+        }
+    }
+
+    /**
+     * Return the number of postings
+     *
+     * @return The number of postings
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Return true if the list holds no postings
+     *
+     * @return True if the list is empty, false otherwise
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Return the id at a position
+     *
+     * @param index Position in the list
+     * @return The id at that position
+     * @throws IndexOutOfBoundsException If index is out of range
+     */
+    public int get(int index) {
+        Objects.checkIndex(index, size);
+        return ids[index];
+    }
+
+    /**
+     * Add an id, keeping the list sorted; an id already present is added
+     * again after its other occurrences. Appending an id at least as large as
+     * every id in the list (the common case when documents are loaded in
+     * order) is amortized O(1).
+     *
+     * @param id Document id to add
+     * @return True
+     * @throws UnsupportedOperationException If the list is read-only
+     */
+    public boolean add(int id) {
+        checkWritable();
+        int index = size;
+        if (size > 0 && ids[size - 1] > id) {
+            index = gallop(id + 1, 0);
+        }
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        System.arraycopy(ids, index, ids, index + 1, size - index);
+        ids[index] = id;
+        size++;
+        return true;
+    }
+
+    /**
+     * Remove one occurrence of an id
+     *
+     * @param id Document id to remove
+     * @return True if the id was found, false otherwise
+     * @throws UnsupportedOperationException If the list is read-only
+     */
+    public boolean remove(int id) {
+        checkWritable();
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        if (index < 0) {
+            return false;
+        }
+        System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+        size--;
+        return true;
+    }
+
+    /**
+     * Return true if the list holds an id
+     *
+     * @param id Document id
+     * @return True if found, false otherwise
+     */
+    public boolean contains(int id) {
+        return Arrays.binarySearch(ids, 0, size, id) >= 0;
+    }
+
+    /**
+     * Remove every posting
+     */
+    public void clear() {
+        checkWritable();
+        size = 0;
+    }
+
+    /**
+     * Shrink the backing array to the number of postings
+     */
+    public void trimToSize() {
+        checkWritable();
+        if (ids.length > size) {
+            ids = Arrays.copyOf(ids, Math.max(size, 1));
+        }
+    }
+
+    /**
+     * Return a copy of the postings as an array
+     *
+     * @return Sorted array of ids
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(ids, size);
+    }
+
+    /**
+     * Intersect sorted posting lists. Starts from the smallest list and
+     * gallops through the others, so the cost is roughly
+     * O(smallest * k * log(largest / smallest)) rather than the product of the
+     * list sizes. As with retainAll on the first list, an id is kept as often
+     * as it occurs there.
+     *
+     * @param lists Lists to intersect, not modified
+     * @return A new list with the ids present in every list, empty if there
+     *         are no lists
+     */
+    public static PostingList intersect(List<PostingList> lists) {
+        PostingList result = new PostingList();
+        if (lists.isEmpty()) {
+            return result;
+        }
+
+        PostingList first = lists.get(0);
+        PostingList[] sorted = lists.toArray(new PostingList[0]);
+        Arrays.sort(sorted, Comparator.comparingInt(PostingList::size));
+        PostingList smallest = sorted[0];
+        int[] positions = new int[sorted.length];
+        int firstPosition = 0;
+
+        candidates:
+        for (int i = 0; i < smallest.size; i++) {
+            int id = smallest.ids[i];
+            if (i > 0 && smallest.ids[i - 1] == id) {
+                continue; // repeats come from the first list below
+            }
+            for (int j = 1; j < sorted.length; j++) {
+                int position = sorted[j].gallop(id, positions[j]);
+                positions[j] = position;
+                if (position == sorted[j].size) {
+                    break candidates;
+                }
+                if (sorted[j].ids[position] != id) {
+                    continue candidates;
+                }
+            }
+            firstPosition = first.gallop(id, firstPosition);
+            while (firstPosition < first.size && first.ids[firstPosition] == id) {
+                result.add(id);
+                firstPosition++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Merge sorted posting lists. The lists are concatenated and sorted once,
+     * so the cost is O(m log m) for m postings in total. An id is kept as
+     * often as it occurs in the list that repeats it most.
+     *
+     * @param lists Lists to merge, not modified
+     * @return A new list with the ids present in any list
+     */
+    public static PostingList union(List<PostingList> lists) {
+        int total = 0;
+        boolean repeats = false;
+        for (PostingList list : lists) {
+            total += list.size;
+            repeats |= list.hasRepeats();
+        }
+        if (repeats) {
+            return unionOfRepeats(lists, total);
+        }
+        int[] merged = new int[Math.max(total, INITIAL_CAPACITY)];
+        int position = 0;
+        for (PostingList list : lists) {
+            System.arraycopy(list.ids, 0, merged, position, list.size);
+            position += list.size;
+        }
+        Arrays.sort(merged, 0, total);
+
+        int unique = 0;
+        for (int i = 0; i < total; i++) {
+            if (unique == 0 || merged[unique - 1] != merged[i]) {
+                merged[unique++] = merged[i];
+            }
+        }
+        return new PostingList(merged, unique, false);
+    }
+
+    /**
+     * Slow path of union for lists that repeat ids: each run of equal ids is
+     * sorted as one long holding the id and the run length, and the longest
+     * run of every id is kept
+     *
+     * @param lists Lists to merge, not modified
+     * @param total Total number of postings
+     * @return A new list with the ids present in any list
+     */
+    private static PostingList unionOfRepeats(List<PostingList> lists, int total) {
+        long[] runs = new long[total];
+        int count = 0;
+        for (PostingList list : lists) {
+            for (int i = 0; i < list.size; ) {
+                int start = i;
+                while (i < list.size && list.ids[i] == list.ids[start]) {
+                    i++;
+                }
+                runs[count++] = ((long) list.ids[start] << 32) | (i - start);
+            }
+        }
+        Arrays.sort(runs, 0, count); // ids are non-negative, so this sorts by id first
+
+        PostingList result = new PostingList();
+        for (int i = 0; i < count; i++) {
+            if (i + 1 < count && runs[i + 1] >>> 32 == runs[i] >>> 32) {
+                continue; // a longer run of the same id follows
+            }
+            for (int n = (int) runs[i]; n > 0; n--) {
+                result.add((int) (runs[i] >>> 32));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Return true if some id occurs more than once
+     *
+     * @return True if the list repeats an id
+     */
+    private boolean hasRepeats() {
+        for (int i = 1; i < size; i++) {
+            if (ids[i] == ids[i - 1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return the ids of 'list' that are not in 'removed'. Gallops through
+     * 'removed', so a short list minus a long one stays cheap.
+     *
+     * @param list    Ids to keep from, not modified
+     * @param removed Ids to leave out, not modified
+     * @return A new list with the remaining ids, each as often as in 'list'
+     */
+    public static PostingList difference(PostingList list, PostingList removed) {
+        PostingList result = new PostingList();
+        int position = 0;
+        for (int i = 0; i < list.size; i++) {
+            int id = list.ids[i];
+            position = removed.gallop(id, position);
+            if (position == removed.size || removed.ids[position] != id) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Return the first position at or after 'from' whose id is >= 'id', using
+     * exponential search followed by binary search
+     *
+     * @param id   Target id
+     * @param from Position to start at
+     * @return The position, size if every remaining id is smaller
+     */
+    private int gallop(int id, int from) {
+        int low = from;
+        int step = 1;
+        int high = from;
+        while (high < size && ids[high] < id) {
+            low = high + 1;
+            high = from + step;
+            step <<= 1;
+        }
+        high = Math.min(high, size);
+        int index = Arrays.binarySearch(ids, low, high, id);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
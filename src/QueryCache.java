@@ -0,0 +1,284 @@
+/*
+ * Name: Felix Najera
+ * PID:  A17618969
+ */
+
+import java.util.*;
+
+/**
+ * Bounded LRU cache of evaluated queries. A query is keyed by the index it
+ * ran against (which also fixes the search kind) and its sorted, unique,
+ * lowercase terms, so "a b" and "b a b" share one entry. An entry remembers
+ * the index version it was computed at and is dropped once the index has
+ * been modified since.
+ *
+ * Besides the number of entries, the cache bounds the total number of
+ * postings it holds, so a few large OR or prefix results cannot pin much
+ * memory: least recently used entries are evicted until the total fits, and
+ * a single entry larger than the bound is not cached at all.
+ *
+ * @author Felix Najera
+ * @since  8/27/24
+ */
+public class QueryCache {
+
+    public static final int DEFAULT_CAPACITY = 1024; // entries kept by serve
+    public static final long DEFAULT_MAX_POSTINGS = 4_000_000; // about 16MB of ids
+
+    private final LinkedHashMap<Key, Entry> entries;
+    private final long maxPostings;
+    private long postings; // total weight of the cached entries
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Constructor that initializes an empty cache holding at most
+     * DEFAULT_MAX_POSTINGS postings
+     *
+     * @param capacity Maximum number of entries; the least recently used
+     *                 entry is evicted beyond it
+     * @throws IllegalArgumentException If capacity is not positive
+     */
+    public QueryCache(int capacity) {
+        this(capacity, DEFAULT_MAX_POSTINGS);
+    }
+
+    /**
+     * Constructor that initializes an empty cache
+     *
+     * @param capacity    Maximum number of entries; the least recently used
+     *                    entry is evicted beyond it
+     * @param maxPostings Maximum total number of postings held by the entries
+     * @throws IllegalArgumentException If capacity or maxPostings is not
+     *                                  positive
+     */
+    public QueryCache(int capacity, long maxPostings) {
+        if (capacity < 1 || maxPostings < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.maxPostings = maxPostings;
+        entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > capacity) {
+                    postings -= eldest.getValue().weight;
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Return the cached results of a query, or null if there are none or
+     * the index changed since they were computed
+     *
+     * @param index Index the query runs against
+     * @param terms Lowercase query terms, in any order
+     * @return The cached results, null on a miss
+     */
+    public synchronized Entry get(SearchIndex<String> index, String[] terms) {
+        Key key = new Key(index, terms);
+        Entry entry = entries.get(key);
+        if (entry != null && entry.version != index.getVersion()) {
+            entries.remove(key);
+            postings -= entry.weight;
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return entry;
+    }
+
+    /**
+     * Store the results of a query, unless they alone hold more postings
+     * than the cache may
+     *
+     * @param index Index the query ran against
+     * @param terms Lowercase query terms, in any order
+     * @param entry Results to store
+     */
+    public synchronized void put(SearchIndex<String> index, String[] terms, Entry entry) {
+        if (entry.weight > maxPostings) {
+            return;
+        }
+        Entry replaced = entries.put(new Key(index, terms), entry);
+        postings += entry.weight - (replaced == null ? 0 : replaced.weight);
+
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (postings > maxPostings) {
+            postings -= eldest.next().weight;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Return the number of lookups that found current results
+     *
+     * @return The number of hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Return the number of lookups that found no current results
+     *
+     * @return The number of misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Return the number of entries evicted to stay within capacity or the
+     * posting bound
+     *
+     * @return The number of evictions
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Return the number of cached queries
+     *
+     * @return The number of entries
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Return the total number of postings held by the cached queries
+     *
+     * @return The number of postings
+     */
+    public synchronized long getPostings() {
+        return postings;
+    }
+
+    /**
+     * Remove every entry; the counters are kept
+     */
+    public synchronized void clear() {
+        entries.clear();
+        postings = 0;
+    }
+
+    /**
+     * Normalized query: the index it runs against, compared by identity, and
+     * its sorted unique terms
+     */
+    private static class Key {
+        private final SearchIndex<String> index;
+        private final List<String> terms;
+
+        Key(SearchIndex<String> index, String[] terms) {
+            this.index = index;
+            this.terms = new ArrayList<>(new TreeSet<>(Arrays.asList(terms)));
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return index == key.index && terms.equals(key.terms);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(index) + terms.hashCode();
+        }
+    }
+
+    /**
+     * Evaluated query: the postings of every term, the keys its fuzzy terms
+     * matched, and the intersection. Posting ids refer to 'documents'.
+     */
+    public static class Entry {
+        private final long version; // index version the results were computed at
+        private final DocumentTable<String> documents;
+        private final Map<String, PostingList> termPostings; // null for no match
+        private final Map<String, List<FuzzySearch.Match>> suggestions; // fuzzy terms only
+        private final PostingList common;
+        private final long weight; // number of postings held, for the bound
+
+        /**
+         * Constructor used by SearchEngine
+         *
+         * @param version      Index version the results were computed at
+         * @param documents    Document table the ids refer to
+         * @param termPostings Postings of each unique term, null for no match
+         * @param suggestions  Ranked keys matched by each fuzzy term
+         * @param common       Ids present for every term
+         */
+        Entry(long version, DocumentTable<String> documents,
+                Map<String, PostingList> termPostings,
+                Map<String, List<FuzzySearch.Match>> suggestions, PostingList common) {
+            this.version = version;
+            this.documents = documents;
+            this.termPostings = termPostings;
+            this.suggestions = suggestions;
+            this.common = common;
+            Set<PostingList> lists = Collections.newSetFromMap(new IdentityHashMap<>());
+            lists.add(common);
+            for (PostingList list : termPostings.values()) {
+                if (list != null) {
+                    lists.add(list);
+                }
+            }
+            long total = 0;
+            for (PostingList list : lists) {
+                total += list.size();
+            }
+            this.weight = total;
+        }
+
+        /**
+         * Return the document table the ids refer to
+         *
+         * @return The document table
+         */
+        public DocumentTable<String> getDocuments() {
+            return documents;
+        }
+
+        /**
+         * Return the postings of a term
+         *
+         * @param term One of the query's terms
+         * @return The term's postings, null if nothing matches it
+         */
+        public PostingList getTermPostings(String term) {
+            return termPostings.get(term);
+        }
+
+        /**
+         * Return the keys a fuzzy term matched
+         *
+         * @param term One of the query's terms
+         * @return The matching keys, best first; null if the term is not fuzzy
+         */
+        public List<FuzzySearch.Match> getSuggestions(String term) {
+            return suggestions.get(term);
+        }
+
+        /**
+         * Return the ids present for every term
+         *
+         * @return The intersection, empty if any term matches nothing
+         */
+        public PostingList getCommon() {
+            return common;
+        }
+    }
+}
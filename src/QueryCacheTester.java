@@ -0,0 +1,110 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.*;
+class QueryCacheTester {
+
+    private List<BSTree<String>> trees;
+    private QueryCache cache;
+
+    @BeforeEach
+    void setUp() {
+        trees = SearchEngineTester.newTrees("moviedata.txt");
+        cache = new QueryCache(2);
+    }
+
+    /**
+     * Run a query and return what it printed to System.out
+     */
+    private String search(SearchIndex<String> tree, String query, QueryCache queryCache) {
+        return SearchEngineTester.captureOutput(
+                () -> SearchEngine.searchMyQuery(tree, query, queryCache));
+    }
+
+    @Test
+    void testHitsMatchUncachedOutput() {
+        BSTree<String> actors = trees.get(0);
+        for (String query : new String[] {"vin-diesel gal-gadot",
+                "gal-gadot vin-diesel vin-diesel", "Vin-Diesel gal-gadot"}) {
+            assertEquals(search(actors, query, null), search(actors, query, cache));
+        }
+        assertEquals(1, cache.getMisses());
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.size());
+
+        // the same terms against another tree are another query
+        search(trees.get(1), "vin-diesel gal-gadot", cache);
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    void testEviction() {
+        BSTree<String> actors = trees.get(0);
+        search(actors, "emma-stone", cache);
+        search(actors, "jon-favreau", cache);
+        search(actors, "emma-stone", cache); // now most recently used
+        search(actors, "taika-waititi", cache);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+
+        search(actors, "emma-stone", cache);
+        assertEquals(2, cache.getHits());
+        search(actors, "jon-favreau", cache);
+        assertEquals(4, cache.getMisses()); // evicted
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertThrows(IllegalArgumentException.class, () -> new QueryCache(0));
+    }
+
+    @Test
+    void testPostingBound() {
+        BSTree<String> actors = trees.get(0);
+        search(actors, "emma-stone", cache);
+        long stone = cache.getPostings(); // the term's postings and the intersection
+        search(actors, "jon-favreau", cache);
+        long both = cache.getPostings();
+        assertTrue(stone >= actors.findPostings("emma-stone").size());
+        assertTrue(both > stone);
+
+        QueryCache small = new QueryCache(10, both);
+        search(actors, "emma-stone", small);
+        search(actors, "jon-favreau", small);
+        assertEquals(both, small.getPostings());
+        assertEquals(0, small.getEvictions());
+
+        search(actors, "taika-waititi", small); // evicts emma-stone, the eldest
+        assertEquals(1, small.getEvictions());
+        assertEquals(2, small.size());
+        assertTrue(small.getPostings() <= both);
+
+        // an entry larger than the whole bound is not kept
+        QueryCache tiny = new QueryCache(10, 1);
+        String expected = search(actors, "emma-stone", null);
+        assertEquals(expected, search(actors, "emma-stone", tiny));
+        assertEquals(0, tiny.size());
+        assertEquals(0, tiny.getPostings());
+        assertThrows(IllegalArgumentException.class, () -> new QueryCache(1, 0));
+    }
+
+    @Test
+    void testInvalidatedByChanges() {
+        BSTree<String> actors = trees.get(0);
+        String before = search(actors, "emma-stone", cache);
+
+        MovieRecord record = MovieRecord.parse("Poor-Things",
+                "Emma-Stone Mark-Ruffalo", "Searchlight", "R");
+        SearchEngine.addMovie(trees.get(0), trees.get(1), trees.get(2), record);
+        String added = search(actors, "emma-stone", cache);
+        assertNotEquals(before, added);
+        assertTrue(added.contains("Poor-Things"));
+        assertEquals(0, cache.getHits());
+
+        assertEquals(added, search(actors, "emma-stone", cache));
+        assertEquals(1, cache.getHits());
+
+        SearchEngine.removeMovie(trees.get(0), trees.get(1), trees.get(2), record);
+        assertEquals(before, search(actors, "emma-stone", cache));
+        assertEquals(3, cache.getMisses());
+    }
+}
@@ -0,0 +1,405 @@
+/*
+ * Name: Felix Najera
+ * PID:  A17618969
+ */
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Evaluates boolean queries across the actor, studio and rating trees, e.g.
+ * "actor:robert-downey-jr AND studio:paramount AND NOT rating:r". Terms are
+ * field:value pairs (a value ending in '*' is a prefix and one ending in '~'
+ * a fuzzy match, as in searchMyQuery) combined with AND, OR, NOT and
+ * parentheses; AND binds tighter than OR and adjacent terms are ANDed. The
+ * trees must share one DocumentTable.
+ *
+ * Each AND runs its most selective operand first, judged by posting-list
+ * sizes, intersects the others into it and subtracts the NOT operands last.
+ * It stops as soon as the intermediate result is empty. Sizes come from the
+ * matching keys alone; the postings of a prefix or fuzzy term are only
+ * merged once the AND reaches it. The set of all documents a NOT subtracts
+ * from is kept until a tree changes, so a planner should live as long as
+ * the trees it plans over rather than be made per query.
+ *
+ * @author Felix Najera
+ * @since  8/27/24
+ */
+public class QueryPlanner {
+
+    // field names, in search kind order
+    private static final List<String> FIELDS = Arrays.asList("actor", "studio", "rating");
+    private static final Pattern TOKEN = Pattern.compile("[()]|[^\\s()]+");
+
+    private final List<? extends SearchIndex<String>> trees;
+    private final DocumentTable<String> documents;
+    private PostingList universe; // every live document, null until needed
+    private long[] universeVersions; // tree versions the universe was built at
+
+    /**
+     * Constructor that plans queries over already loaded trees
+     *
+     * @param trees Actor, studio and rating trees, in that order
+     * @throws IllegalArgumentException If the trees do not share one
+     *                                  DocumentTable
+     */
+    public QueryPlanner(List<? extends SearchIndex<String>> trees) {
+        if (trees.size() != FIELDS.size()) {
+            throw new IllegalArgumentException("Expected actor, studio and rating trees");
+        }
+        documents = trees.get(0).getDocuments();
+        for (SearchIndex<String> tree : trees) {
+            if (documents == null || tree.getDocuments() != documents) {
+                throw new IllegalArgumentException(
+                        "Trees must be in posting-list mode and share one DocumentTable");
+            }
+        }
+        this.trees = trees;
+    }
+
+    /**
+     * Evaluate a query
+     *
+     * @param query Query expression
+     * @return The sorted matching documents, listed under the query
+     * @throws IllegalArgumentException If the query cannot be parsed
+     */
+    public QueryResult evaluate(String query) {
+        PostingList matches = new Evaluation().evaluate(parse(query));
+        return new QueryResult(query, SearchEngine.toSortedDocuments(matches, documents),
+                Collections.emptyList());
+    }
+
+    /**
+     * Evaluate a query and return one page of its matches, those containing
+     * the most of the query's terms first, ties in title order. Terms under
+     * a NOT do not count. Only offset + limit matches are kept instead of
+     * sorting them all.
+     *
+     * @param query  Query expression
+     * @param offset Number of matches to skip
+     * @param limit  Largest number of matches to return
+     * @return The page of matches
+     * @throws IllegalArgumentException If the query cannot be parsed, offset
+     *                                  is negative or limit is not positive
+     */
+    public RankedResult evaluate(String query, int offset, int limit) {
+        Node root = parse(query);
+        Evaluation evaluation = new Evaluation();
+        PostingList matches = evaluation.evaluate(root);
+        Map<String, PostingList> terms = new LinkedHashMap<>();
+        evaluation.positiveTerms(root, terms);
+        return RankedResult.rank(query, documents, matches, new ArrayList<>(terms.values()),
+                offset, limit);
+    }
+
+    /* * * * * Parsing * * * * */
+
+    /**
+     * Parse a query into an expression tree
+     *
+     * @param query Query expression
+     * @return The root of the expression
+     * @throws IllegalArgumentException If the query cannot be parsed
+     */
+    private Node parse(String query) {
+        List<String> tokens = new ArrayList<>();
+        Matcher matcher = TOKEN.matcher(query);
+        while (matcher.find()) {
+            tokens.add(matcher.group());
+        }
+        if (tokens.isEmpty()) {
+            throw new IllegalArgumentException("empty query");
+        }
+
+        Parser parser = new Parser(tokens);
+        Node root = parser.parseOr();
+        if (parser.position < tokens.size()) {
+            throw new IllegalArgumentException("unexpected '" + tokens.get(parser.position) + "'");
+        }
+        return root;
+    }
+
+    /**
+     * Recursive-descent parser over the tokens of one query
+     */
+    private class Parser {
+        private final List<String> tokens;
+        private int position; // next token to read
+
+        Parser(List<String> tokens) {
+            this.tokens = tokens;
+        }
+
+        private String peek() {
+            return position < tokens.size() ? tokens.get(position) : null;
+        }
+
+        // or := and ("OR" and)*
+        Node parseOr() {
+            List<Node> operands = new ArrayList<>();
+            operands.add(parseAnd());
+            while ("OR".equals(peek())) {
+                position++;
+                operands.add(parseAnd());
+            }
+            return operands.size() == 1 ? operands.get(0) : new Node(Node.OR, operands);
+        }
+
+        // and := unary ("AND"? unary)*
+        Node parseAnd() {
+            List<Node> operands = new ArrayList<>();
+            operands.add(parseUnary());
+            while (peek() != null && !"OR".equals(peek()) && !")".equals(peek())) {
+                if ("AND".equals(peek())) {
+                    position++;
+                }
+                operands.add(parseUnary());
+            }
+            return operands.size() == 1 ? operands.get(0) : new Node(Node.AND, operands);
+        }
+
+        // unary := "NOT" unary | "(" or ")" | field:value
+        Node parseUnary() {
+            String token = peek();
+            if (token == null) {
+                throw new IllegalArgumentException("query ends too early");
+            }
+            position++;
+            if (token.equals("NOT")) {
+                return new Node(Node.NOT, Collections.singletonList(parseUnary()));
+            }
+            if (token.equals("(")) {
+                Node inner = parseOr();
+                if (!")".equals(peek())) {
+                    throw new IllegalArgumentException("missing ')'");
+                }
+                position++;
+                return inner;
+            }
+
+            int colon = token.indexOf(':');
+            int field = colon < 0 ? -1 : FIELDS.indexOf(token.substring(0, colon).toLowerCase());
+            if (field < 0 || colon == token.length() - 1) {
+                throw new IllegalArgumentException("expected field:value instead of '" + token
+                        + "'; fields are " + String.join(", ", FIELDS));
+            }
+            return new Node(field, token.substring(colon + 1).toLowerCase());
+        }
+    }
+
+    /**
+     * Expression node: a field:value term, or AND, OR or NOT of operands
+     */
+    private static class Node {
+        static final int AND = -1;
+        static final int OR = -2;
+        static final int NOT = -3;
+
+        final int kind; // search kind of a term, or AND, OR or NOT
+        final String value; // term value, null for operators
+        final List<Node> operands;
+        List<String> keys; // keys the term matches, once looked up
+        long count; // documents of those keys, repeats included
+        PostingList postings; // term postings once merged
+
+        Node(int field, String value) {
+            this.kind = field;
+            this.value = value;
+            this.operands = Collections.emptyList();
+        }
+
+        Node(int operator, List<Node> operands) {
+            this.kind = operator;
+            this.value = null;
+            this.operands = operands;
+        }
+    }
+
+    /* * * * * Evaluation * * * * */
+
+    /**
+     * Return every document some tree still refers to. Removed movies keep
+     * their id in the DocumentTable, so the table alone would overcount. The
+     * union is rebuilt only after a tree's version changed.
+     *
+     * @return Ids of all live documents; must not be modified
+     */
+    private synchronized PostingList universe() {
+        long[] versions = new long[trees.size()];
+        for (int i = 0; i < versions.length; i++) {
+            versions[i] = trees.get(i).getVersion();
+        }
+        if (universe == null || !Arrays.equals(versions, universeVersions)) {
+            List<PostingList> all = new ArrayList<>();
+            for (SearchIndex<String> tree : trees) {
+                Iterator<String> keys = tree.range(null, null);
+                while (keys.hasNext()) {
+                    all.add(tree.findPostings(keys.next()));
+                }
+            }
+            universe = PostingList.union(all);
+            universeVersions = versions;
+        }
+        return universe;
+    }
+
+    /**
+     * State of evaluating one query
+     */
+    private class Evaluation {
+
+        /**
+         * Evaluate an expression
+         *
+         * @param node Expression to evaluate
+         * @return Matching ids; must not be modified
+         */
+        PostingList evaluate(Node node) {
+            switch (node.kind) {
+                case Node.AND:
+                    return evaluateAnd(node.operands);
+                case Node.OR:
+                    List<PostingList> alternatives = new ArrayList<>();
+                    for (Node operand : node.operands) {
+                        alternatives.add(evaluate(operand));
+                    }
+                    return PostingList.union(alternatives);
+                case Node.NOT:
+                    return PostingList.difference(universe(), evaluate(node.operands.get(0)));
+                default:
+                    return termPostings(node);
+            }
+        }
+
+        /**
+         * Evaluate a conjunction: positive operands from the smallest estimate
+         * up, then the negated ones subtracted, stopping once nothing is left
+         *
+         * @param operands Operands of the AND
+         * @return Matching ids
+         */
+        private PostingList evaluateAnd(List<Node> operands) {
+            List<Node> positives = new ArrayList<>();
+            List<Node> negatives = new ArrayList<>();
+            for (Node operand : operands) {
+                if (operand.kind == Node.NOT) {
+                    negatives.add(operand.operands.get(0));
+                } else {
+                    positives.add(operand);
+                }
+            }
+            positives.sort(Comparator.comparingLong(this::estimate));
+
+            PostingList result = positives.isEmpty() ? universe() : null;
+            for (Node positive : positives) {
+                PostingList postings = evaluate(positive);
+                result = result == null ? postings
+                        : PostingList.intersect(Arrays.asList(result, postings));
+                if (result.isEmpty()) {
+                    return result;
+                }
+            }
+            for (Node negative : negatives) {
+                result = PostingList.difference(result, evaluate(negative));
+                if (result.isEmpty()) {
+                    return result;
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Estimate how many documents an expression matches without
+         * evaluating it; exact for terms
+         *
+         * @param node Expression
+         * @return Upper bound on the number of matches
+         */
+        private long estimate(Node node) {
+            switch (node.kind) {
+                case Node.AND:
+                    long smallest = documents.size();
+                    for (Node operand : node.operands) {
+                        if (operand.kind != Node.NOT) {
+                            smallest = Math.min(smallest, estimate(operand));
+                        }
+                    }
+                    return smallest;
+                case Node.OR:
+                    long total = 0;
+                    for (Node operand : node.operands) {
+                        total += estimate(operand);
+                    }
+                    return Math.min(total, documents.size());
+                case Node.NOT:
+                    return documents.size();
+                default:
+                    return Math.min(matchingKeys(node).count, documents.size());
+            }
+        }
+
+        /**
+         * Collect the postings of each distinct term of an expression that
+         * is not under a NOT
+         *
+         * @param node  Expression to search
+         * @param terms Postings by field and term value, added to
+         */
+        void positiveTerms(Node node, Map<String, PostingList> terms) {
+            if (node.kind >= 0) {
+                terms.computeIfAbsent(node.kind + ":" + node.value, key -> termPostings(node));
+            } else if (node.kind != Node.NOT) {
+                for (Node operand : node.operands) {
+                    positiveTerms(operand, terms);
+                }
+            }
+        }
+
+        /**
+         * Look up the keys of a term once and count their documents, without
+         * merging their postings. A term matching one key takes that key's
+         * postings as they are.
+         *
+         * @param term Term node
+         * @return The term, with keys and count set
+         */
+        private Node matchingKeys(Node term) {
+            if (term.keys == null) {
+                SearchIndex<String> tree = trees.get(term.kind);
+                term.keys = SearchEngine.matchingKeys(tree, term.value,
+                        SearchEngine.fuzzyMatches(tree, term.value));
+                if (term.keys.size() == 1) {
+                    term.postings =
+                            SearchEngine.findPostings(tree, term.keys.get(0), documents);
+                }
+                for (String key : term.keys) {
+                    term.count += term.postings != null
+                            ? term.postings.size()
+                            : SearchEngine.findPostings(tree, key, documents).size();
+                }
+            }
+            return term;
+        }
+
+        /**
+         * Merge the postings of a term's keys once
+         *
+         * @param term Term node
+         * @return The term's postings, empty if nothing matches
+         */
+        private PostingList termPostings(Node term) {
+            matchingKeys(term);
+            if (term.postings == null) {
+                SearchIndex<String> tree = trees.get(term.kind);
+                List<PostingList> postings = new ArrayList<>();
+                for (String key : term.keys) {
+                    postings.add(SearchEngine.findPostings(tree, key, documents));
+                }
+                term.postings = PostingList.union(postings);
+            }
+            return term.postings;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.io.*;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+class QueryPlannerTester {
+
+    private List<BSTree<String>> trees;
+    private List<MovieRecord> records;
+    private QueryPlanner planner;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        trees = SearchEngineTester.newTrees("moviedata.txt");
+        records = new ArrayList<>();
+        try (MovieFileReader reader = new MovieFileReader("moviedata.txt")) {
+            MovieRecord record;
+            while ((record = reader.next()) != null) {
+                records.add(record);
+            }
+        }
+        planner = new QueryPlanner(trees);
+    }
+
+    /**
+     * Return a predicate matching records that have 'key' for a search kind
+     */
+    private static Predicate<MovieRecord> has(int searchKind, String key) {
+        return record -> Arrays.asList(record.getKeys(searchKind)).contains(key);
+    }
+
+    /**
+     * Return the sorted titles of the records matching a predicate
+     */
+    private List<String> scan(Predicate<MovieRecord> matches) {
+        return records.stream().filter(matches).map(MovieRecord::getTitle)
+                .distinct().sorted().collect(Collectors.toList());
+    }
+
+    @Test
+    void testMatchesScan() {
+        assertEquals(scan(has(0, "robert-downey-jr").and(has(1, "paramount"))),
+                planner.evaluate("actor:robert-downey-jr AND studio:paramount").getCommon());
+        assertEquals(scan(has(0, "robert-downey-jr").and(has(2, "r").negate())),
+                planner.evaluate("actor:Robert-Downey-Jr AND NOT rating:r").getCommon());
+        assertEquals(scan(has(1, "paramount").or(has(1, "universal")).and(has(2, "pg13"))),
+                planner.evaluate("(studio:paramount OR studio:universal) rating:pg13")
+                        .getCommon());
+        assertEquals(scan(has(2, "pg13").negate()),
+                planner.evaluate("NOT rating:pg13").getCommon());
+        assertEquals(scan(has(0, "vin-diesel").or(has(0, "emma-stone").and(has(2, "r")))),
+                planner.evaluate("actor:vin-diesel OR actor:emma-stone AND rating:r").getCommon());
+        assertEquals(scan(record -> Arrays.stream(record.getKeys(0))
+                        .anyMatch(key -> key.startsWith("robert-"))),
+                planner.evaluate("actor:robert-*").getCommon());
+
+        assertTrue(planner.evaluate("actor:nobody AND rating:r").getCommon().isEmpty());
+        assertTrue(planner.evaluate("rating:r AND NOT rating:r").getCommon().isEmpty());
+        assertEquals("The search yielded no results for actor:nobody" + System.lineSeparator(),
+                planner.evaluate("actor:nobody").toString());
+    }
+
+    @Test
+    void testRemovedMoviesDoNotMatchNot() {
+        MovieRecord removed = records.get(0);
+        assertTrue(planner.evaluate("NOT actor:nobody").getCommon()
+                .contains(removed.getTitle()));
+        SearchEngine.removeMovie(trees.get(0), trees.get(1), trees.get(2), removed);
+        List<String> everything = planner.evaluate("NOT actor:nobody").getCommon();
+        assertFalse(everything.contains(removed.getTitle()));
+        assertEquals(scan(record -> record != removed).size(), everything.size());
+    }
+
+    @Test
+    void testErrors() {
+        for (String query : new String[] {"", "actor:x AND", "(actor:x", "actor:x )",
+                "actor", "title:x", "actor:", "NOT"}) {
+            assertThrows(IllegalArgumentException.class, () -> planner.evaluate(query), query);
+        }
+        assertThrows(IllegalArgumentException.class, () -> new QueryPlanner(Arrays.asList(
+                new BSTree<String>(), new BSTree<String>(), new BSTree<String>())));
+    }
+}
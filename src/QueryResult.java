@@ -0,0 +1,189 @@
+/*
+ * Name: Felix Najera
+ * PID:  A17618969
+ */
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Result of a query, as data: the documents that match every term, then one
+ * entry per line SearchEngine prints for the individual terms, then the
+ * ranked keys each fuzzy term matched. writeTo renders it in SearchEngine's
+ * text format to any sink.
+ *
+ * @author Felix Najera
+ * @since  8/27/24
+ */
+public class QueryResult {
+
+    private static final int PRINTED_SUGGESTIONS = 5; // keys listed per fuzzy term
+
+    private final String query;
+    private final List<String> common;
+    private final List<TermResult> termResults;
+    private final Map<String, List<FuzzySearch.Match>> suggestions;
+
+    /**
+     * Constructor for a result without fuzzy terms
+     *
+     * @param query       Query as given
+     * @param common      Sorted documents matching every term
+     * @param termResults Per-term lines, in print order
+     */
+    QueryResult(String query, List<String> common, List<TermResult> termResults) {
+        this(query, common, termResults, Collections.emptyMap());
+    }
+
+    /**
+     * Constructor used by SearchEngine
+     *
+     * @param query       Query as given
+     * @param common      Sorted documents matching every term
+     * @param termResults Per-term lines, in print order
+     * @param suggestions Ranked keys matched by each fuzzy term, in query order
+     */
+    QueryResult(String query, List<String> common, List<TermResult> termResults,
+            Map<String, List<FuzzySearch.Match>> suggestions) {
+        this.query = query;
+        this.common = Collections.unmodifiableList(common);
+        this.termResults = Collections.unmodifiableList(termResults);
+        this.suggestions = Collections.unmodifiableMap(suggestions);
+    }
+
+    /**
+     * Return the query as given
+     *
+     * @return The query
+     */
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * Return the documents matching every term, sorted
+     *
+     * @return Read-only list of documents, empty if there are none
+     */
+    public List<String> getCommon() {
+        return common;
+    }
+
+    /**
+     * Return the per-term results in print order. A term gets an entry with
+     * the matching documents not listed on an earlier line, or an empty entry
+     * if nothing matches it at all; terms whose documents were all listed
+     * already get no entry.
+     *
+     * @return Read-only list of term results
+     */
+    public List<TermResult> getTermResults() {
+        return termResults;
+    }
+
+    /**
+     * Return the keys matched by each fuzzy term (e.g. "scarlet-johansson~"),
+     * best first: fewest edits, then most documents
+     *
+     * @return Read-only map from fuzzy term to matching keys, in query order
+     */
+    public Map<String, List<FuzzySearch.Match>> getSuggestions() {
+        return suggestions;
+    }
+
+    /**
+     * Write the result in SearchEngine's text format, one line per entry.
+     * Each fuzzy term that matched keys gets a last line listing the best
+     * few of them.
+     *
+     * @param out Sink to write to
+     * @throws IOException If the sink fails
+     */
+    public void writeTo(Appendable out) throws IOException {
+        appendLine(out, query, common);
+        for (TermResult termResult : termResults) {
+            appendLine(out, termResult.getTerm(), termResult.getDocuments());
+        }
+        for (Map.Entry<String, List<FuzzySearch.Match>> entry : suggestions.entrySet()) {
+            List<FuzzySearch.Match> matches = entry.getValue();
+            if (!matches.isEmpty()) {
+                out.append("Closest keys to ").append(entry.getKey()).append(" are: ")
+                        .append(matches.subList(0, Math.min(matches.size(),
+                                PRINTED_SUGGESTIONS)).toString())
+                        .append(System.lineSeparator());
+            }
+        }
+    }
+
+    /**
+     * Write one line of output
+     *
+     * @param out       Sink to write to
+     * @param query     Query or term the line is about
+     * @param documents Documents to list, null or empty for no results
+     * @throws IOException If the sink fails
+     */
+    static void appendLine(Appendable out, String query, List<String> documents)
+            throws IOException {
+        if (documents == null || documents.isEmpty()) {
+            out.append("The search yielded no results for ").append(query);
+        } else {
+            out.append("Documents related to ").append(query)
+                    .append(" are: ").append(documents.toString());
+        }
+        out.append(System.lineSeparator());
+    }
+
+    /**
+     * Return the result in SearchEngine's text format
+     *
+     * @return The printed form of the result
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        try {
+            writeTo(text);
+        } catch (IOException e) {
+            throw new AssertionError(e); // StringBuilder does not throw
+        }
+        return text.toString();
+    }
+
+    /**
+     * One per-term line: the term and the documents listed for it
+     */
+    public static class TermResult {
+        private final String term;
+        private final List<String> documents;
+
+        /**
+         * Constructor used by SearchEngine
+         *
+         * @param term      Query term
+         * @param documents Sorted documents, empty if nothing matches the term
+         */
+        TermResult(String term, List<String> documents) {
+            this.term = term;
+            this.documents = Collections.unmodifiableList(documents);
+        }
+
+        /**
+         * Return the term
+         *
+         * @return The term
+         */
+        public String getTerm() {
+            return term;
+        }
+
+        /**
+         * Return the documents listed for the term, sorted
+         *
+         * @return Read-only list of documents, empty if nothing matches
+         */
+        public List<String> getDocuments() {
+            return documents;
+        }
+    }
+}
@@ -0,0 +1,595 @@
+/*
+ * Name: Felix Najera
+ * PID:  A17618969
+ */
+
+import java.util.*;
+
+/**
+ * Radix tree (compressed trie) of String keys, each with a list of related
+ * documents. Keys that share a prefix ("robert-downey-jr", "robert-de-niro",
+ * ...) share the path down to where they differ, and nodes with a single
+ * child are merged into it. A lookup follows one branch character per node
+ * and ends with a single equals, whatever the number of keys, and the keys
+ * below a node are exactly the keys starting with its prefix, so prefix and
+ * range iteration only visit the path down to the first key and the keys
+ * returned.
+ *
+ * Edge labels are not copied out of the keys: a node refers to a key that
+ * passes through it plus the label's bounds in that key, so the index holds
+ * one String per key, as a BSTree does. Children are kept in arrays sorted by
+ * their first character, which makes iteration order the same as
+ * String.compareTo order.
+ *
+ * @author Felix Najera
+ * @since  8/27/24
+ */
+public class RadixIndex implements UpdatableIndex<String>, Iterable<String> {
+
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private final Node root; // holds the empty key, never removed or merged
+    private final DocumentTable<String> documents; // non-null in posting-list mode
+    private int nelems;
+    private int modCount; // changes whenever keys are added or removed
+    private long version; // changes whenever keys or their documents change
+
+    /**
+     * Node of the tree. Its label is key[start, end) and its own key, the
+     * labels from the root down, is key[0, end).
+     */
+    private static class Node {
+        String key; // the node's key if it is in the index, else one below it
+        int start; // start of the label, the parent's end
+        int end; // end of the label
+        Node[] children = NO_CHILDREN; // sorted by first character
+        LinkedList<String> dataList; // documents, plain mode; null if no key ends here
+        PostingList postings; // documents, posting-list mode; null if no key ends here
+
+        Node(String key, int start, int end) {
+            this.key = key;
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Return true if the node's key is in the index
+         */
+        boolean isTerminal() {
+            return dataList != null || postings != null;
+        }
+
+        /**
+         * Return the index of the child whose label starts with 'c'
+         *
+         * @param c First character of the label
+         * @return The child's index, or -(insertion point) - 1 if there is none
+         */
+        int childIndex(char c) {
+            int low = 0;
+            int high = children.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                char first = children[mid].key.charAt(children[mid].start);
+                if (first < c) {
+                    low = mid + 1;
+                } else if (first > c) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+
+        /**
+         * Take over the label, children and documents of the only child
+         */
+        void mergeWithChild() {
+            Node child = children[0];
+            key = child.key;
+            end = child.end;
+            children = child.children;
+            dataList = child.dataList;
+            postings = child.postings;
+        }
+    }
+
+    /**
+     * 0-arg constructor for an empty index that keeps documents in
+     * LinkedLists
+     */
+    public RadixIndex() {
+        this(null);
+    }
+
+    /**
+     * Constructor for an empty index. With a document table, every key
+     * stores sorted document ids (a PostingList) instead of a LinkedList of
+     * documents, and several indexes may share the table.
+     *
+     * @param documents Shared document table, null for plain LinkedList storage
+     */
+    public RadixIndex(DocumentTable<String> documents) {
+        root = new Node("", 0, 0);
+        this.documents = documents;
+    }
+
+    /**
+     * Return the document table used in posting-list mode
+     *
+     * @return The document table, null in plain LinkedList mode
+     */
+    @Override
+    public DocumentTable<String> getDocuments() {
+        return documents;
+    }
+
+    /**
+     * Return the number of keys in the index
+     *
+     * @return The number of keys
+     */
+    @Override
+    public int getSize() {
+        return nelems;
+    }
+
+    /**
+     * Return a number that changes whenever keys or their documents change
+     *
+     * @return The index version
+     */
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Insert a key into the index
+     *
+     * @param key Key to insert
+     * @return True if the key was newly inserted, false if it already existed
+     * @throws NullPointerException If key is null
+     */
+    public boolean insert(String key) {
+        if (key == null) {
+            throw new NullPointerException("Key cannot be null");
+        }
+        int oldSize = nelems;
+        insertHelper(key);
+        return nelems != oldSize;
+    }
+
+    /**
+     * Return the node holding 'key', adding it if needed. Splits the edge
+     * where the key leaves an existing label.
+     *
+     * @param key Key to find or add
+     * @return The key's terminal node
+     */
+    private Node insertHelper(String key) {
+        Node node = root;
+        while (node.end < key.length()) {
+            int index = node.childIndex(key.charAt(node.end));
+            if (index < 0) {
+                Node leaf = new Node(key, node.end, key.length());
+                node.children = insertChild(node.children, -index - 1, leaf);
+                node = leaf;
+                break;
+            }
+
+            Node child = node.children[index];
+            int split = child.start + 1;
+            while (split < child.end && split < key.length()
+                    && child.key.charAt(split) == key.charAt(split)) {
+                split++;
+            }
+            if (split < child.end) {
+                // the key leaves the label part way: split the edge
+                Node middle = new Node(child.key, child.start, split);
+                child.start = split;
+                middle.children = new Node[] {child};
+                node.children[index] = middle;
+                child = middle;
+            }
+            node = child;
+        }
+
+        if (!node.isTerminal()) {
+            node.key = key;
+            if (documents == null) {
+                node.dataList = new LinkedList<>();
+            } else {
+                node.postings = new PostingList();
+            }
+            nelems++;
+            modCount++;
+            version++;
+        }
+        return node;
+    }
+
+    /**
+     * Return a copy of 'children' with 'child' inserted at 'index'
+     *
+     * @param children Sorted children
+     * @param index    Position of the new child
+     * @param child    Child to insert
+     * @return The new array
+     */
+    private static Node[] insertChild(Node[] children, int index, Node child) {
+        Node[] grown = new Node[children.length + 1];
+        System.arraycopy(children, 0, grown, 0, index);
+        grown[index] = child;
+        System.arraycopy(children, index, grown, index + 1, children.length - index);
+        return grown;
+    }
+
+    /**
+     * Return the terminal node holding 'key'. Only the first character of
+     * each label is looked at on the way down; one equals at the end checks
+     * the rest.
+     *
+     * @param key Target key
+     * @return The key's node, null if the key is not in the index
+     */
+    private Node findNode(String key) {
+        Node node = root;
+        while (node.end < key.length()) {
+            int index = node.childIndex(key.charAt(node.end));
+            if (index < 0) {
+                return null;
+            }
+            node = node.children[index];
+        }
+        return node.isTerminal() && node.key.equals(key) ? node : null;
+    }
+
+    /**
+     * Return true if the 'key' is found in the index, false otherwise
+     *
+     * @param key To be searched
+     * @return True if the 'key' is found, false otherwise
+     * @throws NullPointerException If key is null
+     */
+    @Override
+    public boolean findKey(String key) {
+        if (key == null) {
+            throw new NullPointerException("Key cannot be null");
+        }
+        return findNode(key) != null;
+    }
+
+    /**
+     * Insert 'data' into the list of 'key'
+     *
+     * @param key  Target key
+     * @param data To be added to key's list
+     * @throws NullPointerException     If either key or data is null
+     * @throws IllegalArgumentException If key is not found in the index
+     */
+    public void insertData(String key, String data) {
+        if (key == null || data == null) {
+            throw new NullPointerException("Both key and data must be non-null");
+        }
+
+        Node node = findNode(key);
+        if (node == null) {
+            throw new IllegalArgumentException("Key not found in the index");
+        }
+        addData(node, data);
+    }
+
+    /**
+     * Insert 'key' if it is not in the index yet and append 'data' to its
+     * list, in a single walk down the tree
+     *
+     * @param key  Target key
+     * @param data To be added to key's list
+     * @return True if the key was newly inserted, false if it already existed
+     * @throws NullPointerException If either key or data is null
+     */
+    @Override
+    public boolean insertOrAppend(String key, String data) {
+        if (key == null || data == null) {
+            throw new NullPointerException("Both key and data must be non-null");
+        }
+
+        int oldSize = nelems;
+        addData(insertHelper(key), data);
+        return nelems != oldSize;
+    }
+
+    /**
+     * Append a document to a terminal node's list
+     *
+     * @param node Terminal node
+     * @param data Document to append
+     */
+    private void addData(Node node, String data) {
+        if (node.postings == null) {
+            node.dataList.add(data);
+        } else {
+            node.postings.add(documents.intern(data));
+        }
+        version++;
+    }
+
+    /**
+     * Remove 'data' from the list of 'key'. The key is removed from the
+     * index once its list becomes empty.
+     *
+     * @param key  Target key
+     * @param data To be removed from key's list
+     * @return True if data was found and removed, false otherwise
+     * @throws NullPointerException If either key or data is null
+     */
+    @Override
+    public boolean removeData(String key, String data) {
+        if (key == null || data == null) {
+            throw new NullPointerException("Both key and data must be non-null");
+        }
+
+        Node node = findNode(key);
+        if (node == null) {
+            return false;
+        }
+        boolean removed;
+        if (node.postings == null) {
+            removed = node.dataList.remove(data);
+        } else {
+            int id = documents.indexOf(data);
+            removed = id >= 0 && node.postings.remove(id);
+        }
+        if (!removed) {
+            return false;
+        }
+        version++;
+        if (node.postings == null ? node.dataList.isEmpty() : node.postings.isEmpty()) {
+            remove(key);
+        }
+        return true;
+    }
+
+    /**
+     * Remove 'key' and its list from the index. The node is unlinked if it
+     * has no children left, and a node left with a single child is merged
+     * into it, so the tree stays compressed.
+     *
+     * @param key Key to remove
+     * @return True if the key was found and removed, false otherwise
+     * @throws NullPointerException If key is null
+     */
+    public boolean remove(String key) {
+        if (key == null) {
+            throw new NullPointerException("Key cannot be null");
+        }
+
+        Node parent = null;
+        Node node = root;
+        while (node.end < key.length()) {
+            int index = node.childIndex(key.charAt(node.end));
+            if (index < 0) {
+                return false;
+            }
+            parent = node;
+            node = node.children[index];
+        }
+        if (!node.isTerminal() || !node.key.equals(key)) {
+            return false;
+        }
+
+        node.dataList = null;
+        node.postings = null;
+        if (node != root) {
+            if (node.children.length == 0) {
+                // unlink the leaf; its parent may be left with one child
+                int index = parent.childIndex(node.key.charAt(node.start));
+                Node[] children = new Node[parent.children.length - 1];
+                System.arraycopy(parent.children, 0, children, 0, index);
+                System.arraycopy(parent.children, index + 1, children, index,
+                        children.length - index);
+                parent.children = children;
+                node = parent;
+            }
+            if (node != root && !node.isTerminal() && node.children.length == 1) {
+                node.mergeWithChild();
+            }
+        }
+        nelems--;
+        modCount++;
+        version++;
+        return true;
+    }
+
+    /**
+     * Return the documents related to 'key'. In plain mode this is the key's
+     * own list; in posting-list mode it is a new list built from the ids.
+     *
+     * @param key Target key
+     * @return List of documents related to key
+     * @throws NullPointerException     If key is null
+     * @throws IllegalArgumentException If key is not found in the index
+     */
+    @Override
+    public LinkedList<String> findDataList(String key) {
+        if (key == null) {
+            throw new NullPointerException("Key cannot be null");
+        }
+
+        Node node = findNode(key);
+        if (node == null) {
+            throw new IllegalArgumentException("Key not found in the index");
+        }
+        if (node.postings == null) {
+            return node.dataList;
+        }
+        LinkedList<String> list = new LinkedList<>();
+        for (int i = 0; i < node.postings.size(); i++) {
+            list.add(documents.get(node.postings.get(i)));
+        }
+        return list;
+    }
+
+    /**
+     * Return the PostingList of 'key'. The list is the key's own list and
+     * must not be modified by the caller.
+     *
+     * @param key Target key
+     * @return PostingList of key
+     * @throws NullPointerException     If key is null
+     * @throws IllegalArgumentException If key is not found in the index
+     * @throws IllegalStateException    If the index is not in posting-list mode
+     */
+    @Override
+    public PostingList findPostings(String key) {
+        if (key == null) {
+            throw new NullPointerException("Key cannot be null");
+        }
+        if (documents == null) {
+            throw new IllegalStateException("Index is not in posting-list mode");
+        }
+
+        Node node = findNode(key);
+        if (node == null) {
+            throw new IllegalArgumentException("Key not found in the index");
+        }
+        return node.postings;
+    }
+
+    /**
+     * Return an iterator over the keys from 'lo' (inclusive) to 'hi'
+     * (exclusive) in ascending order. Getting started only walks the path
+     * down to lo, so a prefix query costs the prefix length plus the keys
+     * returned.
+     *
+     * @param lo Smallest key to return, null for no lower bound
+     * @param hi Stop before this key, null for no upper bound
+     * @return Iterator over the keys in range
+     */
+    @Override
+    public Iterator<String> range(String lo, String hi) {
+        return new KeyIterator(lo, hi);
+    }
+
+    /**
+     * Return an iterator over all keys in ascending order
+     *
+     * @return Iterator over the keys
+     */
+    @Override
+    public Iterator<String> iterator() {
+        return new KeyIterator(null, null);
+    }
+
+    /* * * * * Key Iterator * * * * */
+
+    /**
+     * Depth-first iterator over the keys in [lo, hi). The path from the root
+     * is kept on an array stack together with the next child to visit on
+     * each level. Fails fast with a ConcurrentModificationException if keys
+     * are added or removed while iterating.
+     */
+    private class KeyIterator implements Iterator<String> {
+        private Node[] nodes = new Node[16]; // path from the root, top at depth - 1
+        private int[] nextChild = new int[16]; // next child to visit, -1 before the node
+        private int depth;
+        private final String hi; // stop before this key, null for no bound
+        private String lo; // null once every key still to come is >= lo
+        private final int expectedModCount;
+        private String next; // next key to return, null at the end
+
+        KeyIterator(String lo, String hi) {
+            this.lo = lo;
+            this.hi = hi;
+            expectedModCount = modCount;
+            push(root);
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public String next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            String current = next;
+            advance();
+            return current;
+        }
+
+        private void push(Node node) {
+            if (depth == nodes.length) {
+                nodes = Arrays.copyOf(nodes, depth * 2);
+                nextChild = Arrays.copyOf(nextChild, depth * 2);
+            }
+            nodes[depth] = node;
+            nextChild[depth] = -1;
+            depth++;
+        }
+
+        /**
+         * Move on to the next key in range, skipping the subtrees that lie
+         * entirely below lo
+         */
+        private void advance() {
+            while (depth > 0) {
+                Node top = nodes[depth - 1];
+                int child = nextChild[depth - 1]++;
+                if (child < 0) {
+                    // the node's own key comes before its children
+                    if (top.isTerminal() && (lo == null || top.end == lo.length())) {
+                        lo = null;
+                        if (hi != null && top.key.compareTo(hi) >= 0) {
+                            break;
+                        }
+                        next = top.key;
+                        return;
+                    }
+                } else if (child == top.children.length) {
+                    nodes[--depth] = null;
+                } else {
+                    Node below = top.children[child];
+                    if (lo != null) {
+                        int order = compareToLo(below);
+                        if (order < 0) {
+                            continue;
+                        }
+                        if (order > 0) {
+                            lo = null;
+                        }
+                    }
+                    push(below);
+                }
+            }
+            depth = 0;
+            next = null;
+        }
+
+        /**
+         * Compare the keys below a node on the path to lo with lo
+         *
+         * @param node Child of the last node on the path to lo
+         * @return Negative if all of them are below lo, 0 if the node lies
+         *         on the path to lo, positive if all of them are above lo
+         */
+        private int compareToLo(Node node) {
+            int common = Math.min(node.end, lo.length());
+            for (int i = node.start; i < common; i++) {
+                int diff = node.key.charAt(i) - lo.charAt(i);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            return node.end <= lo.length() ? 0 : 1;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import java.io.*;
+import java.util.*;
+class RadixIndexTester {
+
+    private static List<String> toList(Iterator<String> iterator) {
+        List<String> list = new ArrayList<>();
+        iterator.forEachRemaining(list::add);
+        return list;
+    }
+
+    /**
+     * Random key drawn from a small alphabet, so keys share long prefixes
+     * and are often prefixes of each other
+     */
+    private static String randomKey(Random random) {
+        StringBuilder key = new StringBuilder();
+        int length = random.nextInt(6);
+        for (int i = 0; i < length; i++) {
+            key.append("ab-".charAt(random.nextInt(3)));
+        }
+        return key.toString();
+    }
+
+    @Test
+    void testMatchesBSTree() {
+        BSTree<String> tree = new BSTree<>(true);
+        RadixIndex radix = new RadixIndex();
+        Random random = new Random(23);
+        for (int i = 0; i < 20000; i++) {
+            String key = randomKey(random);
+            switch (random.nextInt(4)) {
+                case 0:
+                    assertEquals(!tree.findKey(key), radix.insert(key));
+                    tree.insert(key);
+                    break;
+                case 1:
+                    assertEquals(tree.insertOrAppend(key, "d" + i % 7),
+                            radix.insertOrAppend(key, "d" + i % 7));
+                    break;
+                case 2:
+                    String data = "d" + random.nextInt(7);
+                    assertEquals(tree.removeData(key, data), radix.removeData(key, data));
+                    break;
+                default:
+                    assertEquals(tree.remove(key), radix.remove(key));
+            }
+            assertEquals(tree.getSize(), radix.getSize());
+        }
+
+        assertEquals(toList(tree.iterator()), toList(radix.iterator()));
+        for (int i = 0; i < 1000; i++) {
+            String key = randomKey(random);
+            assertEquals(tree.findKey(key), radix.findKey(key));
+            if (tree.findKey(key)) {
+                assertEquals(tree.findDataList(key), radix.findDataList(key));
+            }
+            String lo = random.nextInt(5) == 0 ? null : randomKey(random);
+            String hi = random.nextInt(5) == 0 ? null : randomKey(random);
+            assertEquals(toList(tree.range(lo, hi)), toList(radix.range(lo, hi)));
+            assertEquals(toList(SearchEngine.prefix(tree, key)),
+                    toList(SearchEngine.prefix(radix, key)));
+        }
+    }
+
+    @Test
+    void testPostingMode() {
+        DocumentTable<String> documents = new DocumentTable<>();
+        RadixIndex radix = new RadixIndex(documents);
+        assertSame(documents, radix.getDocuments());
+        radix.insertOrAppend("robert-downey-jr", "iron-man");
+        radix.insertOrAppend("robert-de-niro", "heat");
+        radix.insertOrAppend("robert-downey-jr", "tropic-thunder");
+        radix.insertOrAppend("robert", "other");
+        long version = radix.getVersion();
+
+        assertEquals(Arrays.asList("iron-man", "tropic-thunder"),
+                radix.findDataList("robert-downey-jr"));
+        assertEquals(2, radix.findPostings("robert-downey-jr").size());
+        assertEquals(Arrays.asList("robert-de-niro", "robert-downey-jr"),
+                toList(SearchEngine.prefix(radix, "robert-d")));
+        assertFalse(radix.findKey("robert-d"));
+        assertFalse(radix.findKey("robert-downey"));
+
+        assertTrue(radix.removeData("robert", "other"));
+        assertFalse(radix.findKey("robert"));
+        assertTrue(radix.getVersion() > version);
+        assertEquals(Arrays.asList("robert-de-niro", "robert-downey-jr"), toList(radix.iterator()));
+    }
+
+    @Test
+    void testErrors() {
+        RadixIndex radix = new RadixIndex();
+        assertThrows(NullPointerException.class, () -> radix.insert(null));
+        assertThrows(NullPointerException.class, () -> radix.findKey(null));
+        assertThrows(NullPointerException.class, () -> radix.insertOrAppend("a", null));
+        assertThrows(IllegalArgumentException.class, () -> radix.insertData("a", "b"));
+        assertThrows(IllegalArgumentException.class, () -> radix.findDataList("a"));
+        assertThrows(IllegalStateException.class, () -> radix.findPostings("a"));
+        assertFalse(radix.remove("a"));
+
+        // the empty key lives in the root
+        assertTrue(radix.insert(""));
+        radix.insertData("", "x");
+        assertEquals(Arrays.asList("x"), radix.findDataList(""));
+        assertEquals(Arrays.asList(""), toList(radix.iterator()));
+
+        Iterator<String> keys = radix.iterator();
+        radix.insert("b");
+        assertThrows(ConcurrentModificationException.class, keys::next);
+        Iterator<String> empty = radix.range("c", null);
+        assertFalse(empty.hasNext());
+        assertThrows(NoSuchElementException.class, empty::next);
+    }
+
+    @Test
+    void testSearchEngineOutputUnchanged() throws IOException {
+        List<? extends SearchIndex<String>> trees =
+                SearchEngine.loadTrees("moviedata.txt", null);
+        List<? extends SearchIndex<String>> radixTrees =
+                SearchEngine.loadTrees("moviedata.txt", null, new HashSet<>(Arrays.asList(0, 2)));
+        assertTrue(radixTrees.get(0) instanceof RadixIndex);
+        assertTrue(radixTrees.get(1) instanceof BSTree);
+        assertTrue(radixTrees.get(2) instanceof RadixIndex);
+
+        for (int kind = 0; kind < 3; kind++) {
+            assertEquals(toList(trees.get(kind).range(null, null)),
+                    toList(radixTrees.get(kind).range(null, null)));
+        }
+        for (String query : new String[] {"emma-stone jesse-eisenberg", "je* tom-cruise",
+                "nobody"}) {
+            assertEquals(SearchEngine.evaluateQuery(trees.get(0), query, null).toString(),
+                    SearchEngine.evaluateQuery(radixTrees.get(0), query, null).toString());
+        }
+        assertEquals(SearchEngine.evaluateQuery(trees.get(2), "pg13", null).toString(),
+                SearchEngine.evaluateQuery(radixTrees.get(2), "pg13", null).toString());
+    }
+}
@@ -0,0 +1,356 @@
+/*
+ * Name: Felix Najera
+ * PID:  A17618969
+ */
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * One page of a ranked query: the documents matching the most query terms
+ * first, ties in title order. Only offset + limit documents are ever kept:
+ * candidates go through a bounded heap instead of the whole match set being
+ * sorted, and when enough documents match every term the postings of the
+ * individual terms are not looked at at all.
+ *
+ * @author Felix Najera
+ * @since  8/27/24
+ */
+public class RankedResult {
+
+    // best first: most terms matched, then title order
+    private static final Comparator<Hit> RANKING = Comparator
+            .comparingInt(Hit::getScore).reversed()
+            .thenComparing(Hit::getDocument);
+
+    private final String query;
+    private final int offset;
+    private final List<Hit> hits;
+    private final boolean hasMore;
+
+    /**
+     * Constructor used by rank
+     *
+     * @param query   Query as given
+     * @param offset  Number of better results skipped
+     * @param hits    The page, best first
+     * @param hasMore True if results follow the page
+     */
+    private RankedResult(String query, int offset, List<Hit> hits, boolean hasMore) {
+        this.query = query;
+        this.offset = offset;
+        this.hits = Collections.unmodifiableList(hits);
+        this.hasMore = hasMore;
+    }
+
+    /**
+     * Rank the documents of a query and return one page of them.
+     * <p>
+     * Document ids follow load order, not title order, so no path can stop
+     * once it has a page: a single term, or enough documents matching every
+     * term, still visits each of those postings and looks up its title.
+     * Building a page of k out of m such documents is O(m log k), not
+     * proportional to k.
+     *
+     * @param query     Query as given
+     * @param documents Document table the ids refer to
+     * @param terms     Postings of each distinct query term that matched
+     * @param common    Ids present for every term, empty if a term matched
+     *                  nothing
+     * @param offset    Number of results to skip
+     * @param limit     Largest number of results to return
+     * @return The page
+     * @throws IllegalArgumentException If offset is negative or limit is
+     *                                  not positive
+     */
+    static RankedResult rank(String query, DocumentTable<String> documents,
+            List<PostingList> terms, PostingList common, int offset, int limit) {
+        int wanted = wanted(offset, limit);
+        PriorityQueue<Hit> worstFirst = new PriorityQueue<>(RANKING.reversed());
+
+        if (terms.size() == 1) {
+            offerAll(worstFirst, wanted, terms.get(0), 1, documents);
+        } else if (distinctSize(common) >= wanted) {
+            // documents matching fewer terms cannot make the page
+            offerAll(worstFirst, wanted, common, terms.size(), documents);
+        } else {
+            // merge the sorted postings, counting the terms of each id
+            int[] positions = new int[terms.size()];
+            while (true) {
+                int id = Integer.MAX_VALUE;
+                for (int t = 0; t < terms.size(); t++) {
+                    if (positions[t] < terms.get(t).size()) {
+                        id = Math.min(id, terms.get(t).get(positions[t]));
+                    }
+                }
+                if (id == Integer.MAX_VALUE) {
+                    break;
+                }
+                int score = 0;
+                for (int t = 0; t < terms.size(); t++) {
+                    PostingList term = terms.get(t);
+                    if (positions[t] < term.size() && term.get(positions[t]) == id) {
+                        // past every repeat, so the document is offered once
+                        while (positions[t] < term.size() && term.get(positions[t]) == id) {
+                            positions[t]++;
+                        }
+                        score++;
+                    }
+                }
+                offer(worstFirst, wanted, documents.get(id), score);
+            }
+        }
+        return page(query, offset, limit, worstFirst);
+    }
+
+    /**
+     * Rank the matches of a query expression by how many of its terms each
+     * one contains and return one page of them. Like the other rank, this
+     * visits every match (or every match containing all terms) and costs
+     * O(m log k) for a page of k out of m matches.
+     *
+     * @param query     Query as given
+     * @param documents Document table the ids refer to
+     * @param matches   Ids the query matches
+     * @param terms     Postings of each distinct term the query asks for;
+     *                  a match's score is the number of them containing it
+     * @param offset    Number of results to skip
+     * @param limit     Largest number of results to return
+     * @return The page
+     * @throws IllegalArgumentException If offset is negative or limit is
+     *                                  not positive
+     */
+    static RankedResult rank(String query, DocumentTable<String> documents,
+            PostingList matches, List<PostingList> terms, int offset, int limit) {
+        int wanted = wanted(offset, limit);
+        PriorityQueue<Hit> worstFirst = new PriorityQueue<>(RANKING.reversed());
+
+        List<PostingList> all = new ArrayList<>();
+        all.add(matches);
+        all.addAll(terms);
+        PostingList common = terms.isEmpty() ? matches : PostingList.intersect(all);
+        if (distinctSize(common) >= wanted) {
+            // matches containing fewer terms cannot make the page
+            offerAll(worstFirst, wanted, common, terms.size(), documents);
+        } else {
+            // walk each term's sorted postings alongside the matches
+            int[] positions = new int[terms.size()];
+            for (int i = 0; i < matches.size(); i++) {
+                int id = matches.get(i);
+                if (i > 0 && id == matches.get(i - 1)) {
+                    continue; // a repeated document is offered once
+                }
+                int score = 0;
+                for (int t = 0; t < terms.size(); t++) {
+                    PostingList term = terms.get(t);
+                    while (positions[t] < term.size() && term.get(positions[t]) < id) {
+                        positions[t]++;
+                    }
+                    if (positions[t] < term.size() && term.get(positions[t]) == id) {
+                        score++;
+                    }
+                }
+                offer(worstFirst, wanted, documents.get(id), score);
+            }
+        }
+        return page(query, offset, limit, worstFirst);
+    }
+
+    /**
+     * Return how many documents a page needs to rank: one more than the
+     * page, to tell whether anything follows it
+     *
+     * @param offset Number of results to skip
+     * @param limit  Largest number of results to return
+     * @return offset + limit + 1, at most Integer.MAX_VALUE
+     * @throws IllegalArgumentException If offset is negative or limit is
+     *                                  not positive
+     */
+    private static int wanted(int offset, int limit) {
+        if (offset < 0 || limit < 1) {
+            throw new IllegalArgumentException("Offset must be >= 0 and limit > 0");
+        }
+        return (int) Math.min((long) offset + limit + 1, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Cut a page out of the best documents found
+     *
+     * @param query      Query as given
+     * @param offset     Number of results to skip
+     * @param limit      Largest number of results to return
+     * @param worstFirst Heap of the best documents, worst on top; emptied
+     * @return The page
+     */
+    private static RankedResult page(String query, int offset, int limit,
+            PriorityQueue<Hit> worstFirst) {
+        Hit[] ranked = new Hit[worstFirst.size()];
+        for (int i = ranked.length - 1; i >= 0; i--) {
+            ranked[i] = worstFirst.poll();
+        }
+        int from = Math.min(offset, ranked.length);
+        int to = (int) Math.min((long) offset + limit, ranked.length);
+        return new RankedResult(query, offset, Arrays.asList(ranked).subList(from, to),
+                ranked.length > to);
+    }
+
+    /**
+     * Return the number of distinct ids in a posting list
+     *
+     * @param postings Sorted ids, possibly repeated
+     * @return The number of different ids
+     */
+    private static int distinctSize(PostingList postings) {
+        int distinct = 0;
+        for (int i = 0; i < postings.size(); i++) {
+            if (i == 0 || postings.get(i) != postings.get(i - 1)) {
+                distinct++;
+            }
+        }
+        return distinct;
+    }
+
+    /**
+     * Offer every document of a posting list with the same score, repeated
+     * ids once
+     */
+    private static void offerAll(PriorityQueue<Hit> worstFirst, int wanted,
+            PostingList postings, int score, DocumentTable<String> documents) {
+        for (int i = 0; i < postings.size(); i++) {
+            if (i > 0 && postings.get(i) == postings.get(i - 1)) {
+                continue;
+            }
+            offer(worstFirst, wanted, documents.get(postings.get(i)), score);
+        }
+    }
+
+    /**
+     * Add a document to the heap if it ranks among the 'wanted' best so far
+     *
+     * @param worstFirst Heap of the best documents so far, worst on top
+     * @param wanted     Number of documents to keep
+     * @param document   Candidate document
+     * @param score      Number of query terms it matches
+     */
+    private static void offer(PriorityQueue<Hit> worstFirst, int wanted,
+            String document, int score) {
+        if (worstFirst.size() == wanted) {
+            Hit worst = worstFirst.peek();
+            if (score < worst.score
+                    || (score == worst.score && document.compareTo(worst.document) >= 0)) {
+                return;
+            }
+            worstFirst.poll();
+        }
+        worstFirst.add(new Hit(document, score));
+    }
+
+    /**
+     * Return the query as given
+     *
+     * @return The query
+     */
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * Return the number of better results skipped before this page
+     *
+     * @return The offset
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Return the results on this page, best first
+     *
+     * @return Read-only list of hits, empty if the offset is past the end
+     */
+    public List<Hit> getHits() {
+        return hits;
+    }
+
+    /**
+     * Return true if more results follow this page
+     *
+     * @return True if there is a next page
+     */
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    /**
+     * Write the page as one line in the style of SearchEngine's output, e.g.
+     * "Documents 1-10 related to pg13 are: [...] (more after 10)"
+     *
+     * @param out Sink to write to
+     * @throws IOException If the sink fails
+     */
+    public void writeTo(Appendable out) throws IOException {
+        if (hits.isEmpty()) {
+            QueryResult.appendLine(out, query, null);
+            return;
+        }
+        List<String> titles = new ArrayList<>();
+        for (Hit hit : hits) {
+            titles.add(hit.getDocument());
+        }
+        int last = offset + hits.size();
+        out.append("Documents ").append(String.valueOf(offset + 1)).append('-')
+                .append(String.valueOf(last)).append(" related to ").append(query)
+                .append(" are: ").append(titles.toString());
+        if (hasMore) {
+            out.append(" (more after ").append(String.valueOf(last)).append(')');
+        }
+        out.append(System.lineSeparator());
+    }
+
+    /**
+     * Return the page in the format of writeTo
+     *
+     * @return The printed form of the page
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        try {
+            writeTo(text);
+        } catch (IOException e) {
+            throw new AssertionError(e); // StringBuilder does not throw
+        }
+        return text.toString();
+    }
+
+    /**
+     * Ranked document: its title and how many query terms it matches
+     */
+    public static class Hit {
+        private final String document;
+        private final int score;
+
+        Hit(String document, int score) {
+            this.document = document;
+            this.score = score;
+        }
+
+        /**
+         * Return the document
+         *
+         * @return The document's title
+         */
+        public String getDocument() {
+            return document;
+        }
+
+        /**
+         * Return the number of distinct query terms the document matches
+         *
+         * @return The score
+         */
+        public int getScore() {
+            return score;
+        }
+    }
+}
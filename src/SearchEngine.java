@@ -3,12 +3,25 @@
  * PID:  A17618969
  */
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.LinkedList;
-import java.util.Scanner;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Search Engine implementation.
@@ -18,127 +31,604 @@ import java.util.*;
  */
 public class SearchEngine {
 
+    private static final String SERVE_FLAG = "--serve"; // resident query mode
+    private static final String INDEX_FLAG = "--index"; // load trees from an index file
+    private static final String RADIX_FLAG = "--radix"; // search kinds kept in a RadixIndex
+    private static final String PREFIX_WILDCARD = "*"; // "robert-*" matches every robert- key
+    private static final String FUZZY_MARK = "~"; // "scarlet-johansson~" matches near misses
+    private static final int FUZZY_DISTANCE = 2; // edits allowed by a bare FUZZY_MARK
+    private static final String TOP_FLAG = "--top"; // "--top 10 query" pages ranked results
+    private static final String OFFSET_FLAG = "--offset"; // "--top 10 --offset 20 query"
+    private static final int CROSS_FIELD_KIND = 3; // search kind of QueryPlanner expressions
+    private static final long PARALLEL_RANGE_BYTES = 4L << 20; // bytes parsed per task
+    private static final long PARALLEL_LOAD_BYTES = 8L << 20; // files this big load in parallel
+
     /**
-     * Populate BSTrees from a file
+     * Populate search trees from a file. Trees that are already populated
+     * keep their contents, so this also adds the records of a delta file.
      *
-     * @param movieTree  - BST to be populated with actors
-     * @param studioTree - BST to be populated with studios
-     * @param ratingTree - BST to be populated with ratings
+     * @param movieTree  - tree to be populated with actors
+     * @param studioTree - tree to be populated with studios
+     * @param ratingTree - tree to be populated with ratings
      * @param fileName   - name of the input file
      * @return  false if file not found, true otherwise
+     * @throws UncheckedIOException   If reading the file fails
+     * @throws NoSuchElementException If a record is truncated; the message
+     *                                gives the line the record starts on
      */
     public static boolean populateSearchTrees(
-            BSTree<String> movieTree, BSTree<String> studioTree,
-            BSTree<String> ratingTree, String fileName
+            UpdatableIndex<String> movieTree, UpdatableIndex<String> studioTree,
+            UpdatableIndex<String> ratingTree, String fileName
     ) {
-        // open and read file
-        File file = new File(fileName);
-        try {
-            Scanner scanner = new Scanner(file);
-            while (scanner.hasNextLine()) {
-                // read 5 lines per batch:
-                // movie, cast, studios, rating, trailing hyphen
-                String movie = scanner.nextLine().trim();
-                String[] cast = scanner.nextLine().split(" ");
-                String[] studios = scanner.nextLine().split(" ");
-                String rating = scanner.nextLine().trim();
-                scanner.nextLine();
+        // open and read file; each record is 5 lines:
+        // movie, cast, studios, rating, trailing hyphen
+        try (MovieFileReader reader = new MovieFileReader(fileName)) {
+            MovieRecord record;
+            while ((record = reader.next()) != null) {
+                // populate three trees with the information you just read
+                addMovie(movieTree, studioTree, ratingTree, record);
+            }
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return true;
+    }
 
+    /**
+     * Add one movie to already populated trees. The cost depends only on the
+     * movie's own keys, not on the size of the trees. To add the records of a
+     * whole delta file, call populateSearchTrees on the populated trees.
+     *
+     * @param movieTree  - tree holding actors
+     * @param studioTree - tree holding studios
+     * @param ratingTree - tree holding ratings
+     * @param record     - movie to add
+     */
+    public static void addMovie(
+            UpdatableIndex<String> movieTree, UpdatableIndex<String> studioTree,
+            UpdatableIndex<String> ratingTree, MovieRecord record) {
+        indexRecord(movieTree, record, 0);
+        indexRecord(studioTree, record, 1);
+        indexRecord(ratingTree, record, 2);
+    }
 
-                // populate three trees with the information you just read
-                // hint: create a helper function and reuse it to build all three trees
+    /**
+     * Remove a movie from populated trees. 'record' must hold the keys the
+     * movie was added under, so only those keys are visited.
+     *
+     * @param movieTree  - tree holding actors
+     * @param studioTree - tree holding studios
+     * @param ratingTree - tree holding ratings
+     * @param record     - movie to remove, as it was added
+     * @return true if the movie was found under any of its keys
+     */
+    public static boolean removeMovie(
+            UpdatableIndex<String> movieTree, UpdatableIndex<String> studioTree,
+            UpdatableIndex<String> ratingTree, MovieRecord record) {
+        boolean removed = false;
+        List<UpdatableIndex<String>> trees = Arrays.asList(movieTree, studioTree, ratingTree);
+        for (int searchKind = 0; searchKind < trees.size(); searchKind++) {
+            for (String key : record.getKeys(searchKind)) {
+                removed |= trees.get(searchKind).removeData(key, record.getTitle());
+            }
+        }
+        return removed;
+    }
 
+    /**
+     * Replace a movie in populated trees, e.g. after its cast changed
+     *
+     * @param movieTree  - tree holding actors
+     * @param studioTree - tree holding studios
+     * @param ratingTree - tree holding ratings
+     * @param oldRecord  - movie to remove, as it was added
+     * @param newRecord  - movie to add in its place
+     * @return true if the old movie was found under any of its keys
+     */
+    public static boolean replaceMovie(
+            UpdatableIndex<String> movieTree, UpdatableIndex<String> studioTree,
+            UpdatableIndex<String> ratingTree, MovieRecord oldRecord, MovieRecord newRecord) {
+        boolean removed = removeMovie(movieTree, studioTree, ratingTree, oldRecord);
+        addMovie(movieTree, studioTree, ratingTree, newRecord);
+        return removed;
+    }
 
-                for (String actor : cast) {
-                    String lowerCaseActor = actor.toLowerCase();
-                    if (!movieTree.findKey(lowerCaseActor)) {
-                        movieTree.insert(lowerCaseActor);
-                    }
-                    movieTree.insertData(lowerCaseActor, movie);
-                }
+    /**
+     * Add a movie to one tree under each of its keys for a search kind
+     *
+     * @param tree       Tree to populate
+     * @param record     Parsed movie record
+     * @param searchKind Which of the record's keys to use
+     */
+    private static void indexRecord(
+            UpdatableIndex<String> tree, MovieRecord record, int searchKind) {
+        for (String key : record.getKeys(searchKind)) {
+            tree.insertOrAppend(key, record.getTitle());
+        }
+    }
 
+    /**
+     * Populate search trees from a file using several threads. The file is
+     * split into ranges of whole records, which one thread per core parses
+     * with the same MovieFileReader populateSearchTrees uses. Each tree is
+     * filled by its own thread, range by range in file order, while later
+     * ranges are being parsed. A tree takes one writer at a time, so building
+     * uses at most three threads; parsing is the stage that scales with
+     * cores. Titles are interned in file order, so the trees come out
+     * identical to the ones populateSearchTrees builds.
+     *
+     * @param movieTree  - tree to be populated with actors
+     * @param studioTree - tree to be populated with studios
+     * @param ratingTree - tree to be populated with ratings
+     * @param fileName   - name of the input file
+     * @return  false if file not found, true otherwise
+     * @throws UncheckedIOException   If reading the file fails
+     * @throws NoSuchElementException If the file ends in the middle of a record
+     */
+    public static boolean populateSearchTreesParallel(
+            UpdatableIndex<String> movieTree, UpdatableIndex<String> studioTree,
+            UpdatableIndex<String> ratingTree, String fileName
+    ) {
+        List<UpdatableIndex<String>> trees = Arrays.asList(movieTree, studioTree, ratingTree);
+        Set<DocumentTable<String>> tables = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (UpdatableIndex<String> tree : trees) {
+            if (tree.getDocuments() != null) {
+                tables.add(tree.getDocuments());
+            }
+        }
+
+        Path path = Paths.get(fileName);
+        List<MovieFileReader.Range> ranges;
+        try {
+            long parts = Math.max(1, Files.size(path) / PARALLEL_RANGE_BYTES);
+            ranges = MovieFileReader.split(path, (int) Math.min(parts, Integer.MAX_VALUE));
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
 
+        int workers = Runtime.getRuntime().availableProcessors();
+        ExecutorService parsers = Executors.newFixedThreadPool(workers);
+        ExecutorService builders = Executors.newFixedThreadPool(Math.min(trees.size(), workers));
+        try {
+            // parse up to one range per worker ahead of the builders
+            Deque<Future<MovieRecord[]>> parsing = new ArrayDeque<>();
+            List<Future<?>> building = new ArrayList<>();
+            int next = 0;
+            while (next < ranges.size() || !parsing.isEmpty()) {
+                while (next < ranges.size() && parsing.size() < workers) {
+                    MovieFileReader.Range range = ranges.get(next++);
+                    parsing.add(parsers.submit(() -> readRange(range)));
+                }
+                MovieRecord[] records = await(parsing.poll());
 
-                for (String studio : studios) {
-                    String lowerCaseStudio = studio.toLowerCase();
-                    if (!studioTree.findKey(lowerCaseStudio)) {
-                        studioTree.insert(lowerCaseStudio);
+                // hand out title ids in file order, as the sequential build does
+                for (DocumentTable<String> table : tables) {
+                    for (MovieRecord record : records) {
+                        table.intern(record.getTitle());
                     }
-                    studioTree.insertData(lowerCaseStudio, movie);
                 }
 
-                String lowerCaseRating = rating.toLowerCase();
-                if (!ratingTree.findKey(lowerCaseRating)) {
-                    ratingTree.insert(lowerCaseRating);
+                awaitAll(building);
+                building.clear();
+                for (int kind = 0; kind < trees.size(); kind++) {
+                    UpdatableIndex<String> tree = trees.get(kind);
+                    int searchKind = kind;
+                    building.add(builders.submit(() -> {
+                        for (MovieRecord record : records) {
+                            indexRecord(tree, record, searchKind);
+                        }
+                    }));
                 }
-                ratingTree.insertData(lowerCaseRating, movie);
+            }
+            awaitAll(building);
+        } finally {
+            parsers.shutdownNow();
+            builders.shutdown();
+        }
+        return true;
+    }
 
+    /**
+     * Read every record of a range of a file
+     *
+     * @param range Range to read
+     * @return The records, in file order
+     * @throws IOException            If reading fails
+     * @throws NoSuchElementException If the file ends inside a record; the
+     *                                message names the record's first line
+     */
+    private static MovieRecord[] readRange(MovieFileReader.Range range) throws IOException {
+        ArrayList<MovieRecord> records = new ArrayList<>();
+        try (MovieFileReader reader = range.open()) {
+            MovieRecord record;
+            while ((record = reader.next()) != null) {
+                records.add(record);
+            }
+        }
+        return records.toArray(new MovieRecord[0]);
+    }
 
+    /**
+     * Wait for tasks to finish, rethrowing the first failure
+     *
+     * @param futures Tasks to wait for
+     */
+    private static void awaitAll(List<Future<?>> futures) {
+        for (Future<?> future : futures) {
+            await(future);
+        }
+    }
+
+    /**
+     * Wait for a task to finish and return its result, rethrowing its
+     * failure
+     *
+     * @param future Task to wait for
+     * @return The task's result
+     * @throws UncheckedIOException If the task failed with an IOException
+     */
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
             }
-            scanner.close();
-        } catch (FileNotFoundException e) {
-            return false;
+            if (cause instanceof IOException) {
+                throw new UncheckedIOException((IOException) cause);
+            }
+            throw new IllegalStateException(cause);
         }
-        return true;
     }
 
     /**
-     * Search a query in a BST
+     * Search a query in a BST (or a read-only snapshot of one). The index is
+     * not modified, so one loaded index can answer any number of queries. A
+     * term ending in '*' (e.g. "robert-*") matches the documents of every key
+     * starting with the rest of the term. A term ending in '~' (e.g.
+     * "scarlet-johansson~") matches every key within two edits of the rest
+     * of the term, or within N edits for "~N"; the matching keys are listed
+     * as ranked suggestions after the results.
      *
      * @param searchTree - BST to be searched
      * @param query      - query string
      */
-    public static void searchMyQuery(BSTree<String> searchTree, String query) {
+    public static void searchMyQuery(SearchIndex<String> searchTree, String query) {
+        searchMyQuery(searchTree, query, null);
+    }
 
+    /**
+     * Search a query, reusing the postings of an earlier query with the same
+     * terms if the cache still holds them for the current index version
+     *
+     * @param searchTree - BST to be searched
+     * @param query      - query string
+     * @param cache      - cache of evaluated queries, null for none
+     */
+    public static void searchMyQuery(
+            SearchIndex<String> searchTree, String query, QueryCache cache
+    ) {
+        System.out.print(evaluateQuery(searchTree, query, cache));
+    }
 
+    /**
+     * Evaluate a query without printing anything. The result holds exactly
+     * the lines searchMyQuery prints.
+     *
+     * @param searchTree - BST to be searched
+     * @param query      - query string
+     * @param cache      - cache of evaluated queries, null for none
+     * @return The result of the query
+     */
+    public static QueryResult evaluateQuery(
+            SearchIndex<String> searchTree, String query, QueryCache cache
+    ) {
 
         // Process query
         String[] keys = query.toLowerCase().split(" ");
-        Set<String> uniqueKeys = new HashSet<>(Arrays.asList(keys));
-
-        // Search for common results (intersection)
-        LinkedList<String> commonResults = new LinkedList<>();
-        boolean firstKey = true;
-        for (String key : uniqueKeys) {
-            if (searchTree.findKey(key)) {
-                LinkedList<String> results = searchTree.findDataList(key);
-                if (firstKey) {
-                    commonResults.addAll(results);
-                    firstKey = false;
-                } else {
-                    commonResults.retainAll(results);
+        QueryCache.Entry results = lookup(searchTree, keys, cache);
+        DocumentTable<String> documents = results.getDocuments();
+        PostingList commonResults = results.getCommon();
+
+        // Common results if any, otherwise no results for the full query
+        List<String> common = toSortedDocuments(commonResults, documents);
+
+        // Individual results, leaving out documents already listed
+        List<QueryResult.TermResult> termResults = new ArrayList<>();
+        BitSet printedResults = new BitSet(documents.size());
+        markAll(printedResults, commonResults);
+        for (String key : keys) {
+            PostingList keyResults = results.getTermPostings(key);
+            if (keyResults != null) {
+                PostingList unprinted = new PostingList();
+                for (int i = 0; i < keyResults.size(); i++) {
+                    if (!printedResults.get(keyResults.get(i))) {
+                        unprinted.add(keyResults.get(i));
+                    }
+                }
+                if (!unprinted.isEmpty()) {
+                    termResults.add(new QueryResult.TermResult(
+                            key, toSortedDocuments(unprinted, documents)));
+                    markAll(printedResults, unprinted);
                 }
             } else {
-                commonResults.clear();
-                break;
+                // no results for individual key if not found
+                termResults.add(new QueryResult.TermResult(key, Collections.emptyList()));
             }
         }
 
-        // Print common results if any, otherwise print no results for the full query
-        if (!commonResults.isEmpty()) {
-            Collections.sort(commonResults);
-            print(query, commonResults);
-        } else {
-            print(query, new LinkedList<>());
+        // Ranked keys for fuzzy terms, in query order
+        Map<String, List<FuzzySearch.Match>> suggestions = new LinkedHashMap<>();
+        for (String key : keys) {
+            List<FuzzySearch.Match> matches = results.getSuggestions(key);
+            if (matches != null) {
+                suggestions.put(key, matches);
+            }
         }
+        return new QueryResult(query, common, termResults, suggestions);
+    }
 
-        // Search and print individual results
-        Set<String> printedResults = new HashSet<>(commonResults);
+    /**
+     * Evaluate a query in ranked mode and return one page of it. Documents
+     * matching more of the query's distinct terms come first, ties in title
+     * order; unlike evaluateQuery there are no per-term lines. Only
+     * offset + limit + 1 documents are kept and ordered, but every matching
+     * posting is still scored, since ids are not in title order: a page of
+     * k out of m matches costs O(m log k) rather than growing with k alone.
+     *
+     * @param searchTree - BST to be searched
+     * @param query      - query string
+     * @param cache      - cache of evaluated queries, null for none
+     * @param offset     - number of results to skip
+     * @param limit      - largest number of results to return
+     * @return The page of results
+     * @throws IllegalArgumentException If offset is negative or limit is not
+     *                                  positive
+     */
+    public static RankedResult rankQuery(SearchIndex<String> searchTree, String query,
+            QueryCache cache, int offset, int limit) {
+        String[] keys = query.toLowerCase().split(" ");
+        QueryCache.Entry results = lookup(searchTree, keys, cache);
+        List<PostingList> terms = new ArrayList<>();
+        for (String key : new LinkedHashSet<>(Arrays.asList(keys))) {
+            PostingList postings = results.getTermPostings(key);
+            if (postings != null) {
+                terms.add(postings);
+            }
+        }
+        return RankedResult.rank(query, results.getDocuments(), terms, results.getCommon(),
+                offset, limit);
+    }
+
+    /**
+     * Return the evaluated postings of a query's terms, from the cache if it
+     * still holds them for the current index version
+     *
+     * @param searchTree Index to search
+     * @param keys       Lowercase query terms
+     * @param cache      Cache of evaluated queries, null for none
+     * @return The evaluated query
+     */
+    private static QueryCache.Entry lookup(
+            SearchIndex<String> searchTree, String[] keys, QueryCache cache
+    ) {
+        QueryCache.Entry results = cache == null ? null : cache.get(searchTree, keys);
+        if (results == null) {
+            results = evaluatePostings(searchTree, keys);
+            if (cache != null) {
+                cache.put(searchTree, keys, results);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Look up the postings of every term of a query and intersect them
+     *
+     * @param searchTree Index to search
+     * @param keys       Lowercase query terms
+     * @return The evaluated query
+     */
+    private static QueryCache.Entry evaluatePostings(
+            SearchIndex<String> searchTree, String[] keys
+    ) {
+        long version = searchTree.getVersion();
+
+        // trees without a document table get a query-local one
+        DocumentTable<String> documents = searchTree.getDocuments();
+        if (documents == null) {
+            documents = new DocumentTable<>();
+        }
+
+        // Search for common results (intersection), smallest list first. A
+        // repeated document is listed as often as under the first key, as
+        // retainAll on the first key's list did.
+        Map<String, PostingList> termPostings = new HashMap<>();
+        Map<String, List<FuzzySearch.Match>> suggestions = new HashMap<>();
+        List<PostingList> found = new ArrayList<>();
+        for (String key : new HashSet<>(Arrays.asList(keys))) {
+            List<FuzzySearch.Match> fuzzy = fuzzyMatches(searchTree, key);
+            if (fuzzy != null) {
+                suggestions.put(key, fuzzy);
+            }
+            PostingList postings = termPostings(searchTree, key, documents, fuzzy);
+            termPostings.put(key, postings);
+            if (postings != null) {
+                found.add(postings);
+            }
+        }
+        PostingList commonResults = found.size() == termPostings.size()
+                ? PostingList.intersect(found)
+                : new PostingList();
+        return new QueryCache.Entry(version, documents, termPostings, suggestions,
+                commonResults);
+    }
+
+    /**
+     * Return the postings of a query term: the key's own postings, or for a
+     * prefix or fuzzy term the union of the postings of every matching key
+     *
+     * @param searchTree Index to search
+     * @param term       Key, prefix followed by '*', or fuzzy term
+     * @param documents  Document table the returned ids refer to
+     * @param fuzzy      Keys a fuzzy term matches, null for other terms
+     * @return The term's postings, null if no key matches
+     */
+    private static PostingList termPostings(SearchIndex<String> searchTree, String term,
+            DocumentTable<String> documents, List<FuzzySearch.Match> fuzzy) {
+        List<String> keys = matchingKeys(searchTree, term, fuzzy);
+        if (keys.size() == 1) {
+            return findPostings(searchTree, keys.get(0), documents);
+        }
+        List<PostingList> matches = new ArrayList<>();
         for (String key : keys) {
-            if (searchTree.findKey(key)) {
-                LinkedList<String> results = searchTree.findDataList(key);
-                results.removeAll(printedResults);
-                if (!results.isEmpty()) {
-                    Collections.sort(results);
-                    print(key, results);
-                    printedResults.addAll(results);
-                }
-            } else {
-                // Print no results for individual key if not found
-                print(key, new LinkedList<>());
+            matches.add(findPostings(searchTree, key, documents));
+        }
+        return matches.isEmpty() ? null : PostingList.union(matches);
+    }
+
+    /**
+     * Return the keys of an index a query term matches, without looking at
+     * their postings
+     *
+     * @param searchTree Index to search
+     * @param term       Key, prefix followed by '*', or fuzzy term
+     * @param fuzzy      Keys a fuzzy term matches (see fuzzyMatches), null
+     *                   for other terms
+     * @return The matching keys, empty if there are none
+     */
+    static List<String> matchingKeys(
+            SearchIndex<String> searchTree, String term, List<FuzzySearch.Match> fuzzy
+    ) {
+        List<String> keys = new ArrayList<>();
+        if (fuzzy != null) {
+            for (FuzzySearch.Match match : fuzzy) {
+                keys.add(match.getKey());
+            }
+        } else if (term.endsWith(PREFIX_WILDCARD)) {
+            prefix(searchTree, term.substring(0, term.length() - PREFIX_WILDCARD.length()))
+                    .forEachRemaining(keys::add);
+        } else if (searchTree.findKey(term)) {
+            keys.add(term);
+        }
+        return keys;
+    }
+
+    /**
+     * Return the keys a fuzzy term matches: "key~" allows FUZZY_DISTANCE
+     * edits and "key~N" allows N, up to FuzzySearch.MAX_DISTANCE
+     *
+     * @param searchTree Index to search
+     * @param term       Query term
+     * @return The matching keys, best first; null if the term is not fuzzy
+     */
+    static List<FuzzySearch.Match> fuzzyMatches(
+            SearchIndex<String> searchTree, String term
+    ) {
+        int mark = term.lastIndexOf(FUZZY_MARK);
+        if (mark <= 0) {
+            return null;
+        }
+        String bound = term.substring(mark + FUZZY_MARK.length());
+        int distance = FUZZY_DISTANCE;
+        if (!bound.isEmpty()) {
+            if (bound.length() != 1 || !Character.isDigit(bound.charAt(0))) {
+                return null;
             }
+            distance = Math.min(bound.charAt(0) - '0', FuzzySearch.MAX_DISTANCE);
         }
+        return FuzzySearch.search(searchTree, term.substring(0, mark), distance);
+    }
 
+    /**
+     * Return an iterator over the keys of an index that start with 'prefix',
+     * in ascending order. Costs O(log n + k) for k matching keys.
+     *
+     * @param searchTree Index to search
+     * @param prefix     Prefix of the keys
+     * @return Iterator over the matching keys
+     */
+    public static Iterator<String> prefix(SearchIndex<String> searchTree, String prefix) {
+        return searchTree.range(prefix, prefixEnd(prefix));
+    }
+
+    /**
+     * Return the least string greater than every string starting with
+     * 'prefix'
+     *
+     * @param prefix Prefix of the keys
+     * @return The bound, null if there is none
+     */
+    static String prefixEnd(String prefix) {
+        int end = prefix.length();
+        while (end > 0 && prefix.charAt(end - 1) == Character.MAX_VALUE) {
+            end--;
+        }
+        if (end == 0) {
+            return null;
+        }
+        return prefix.substring(0, end - 1) + (char) (prefix.charAt(end - 1) + 1);
+    }
+
+    /**
+     * Return the sorted postings of a key that is known to be in the tree. For
+     * trees without a document table the key's list is interned into
+     * 'documents'.
+     *
+     * @param searchTree Index holding the key
+     * @param key        Key to look up
+     * @param documents  Document table the returned ids refer to
+     * @return The key's postings
+     */
+    static PostingList findPostings(
+            SearchIndex<String> searchTree, String key, DocumentTable<String> documents
+    ) {
+        if (searchTree.getDocuments() != null) {
+            return searchTree.findPostings(key);
+        }
+        PostingList postings = new PostingList();
+        for (String document : searchTree.findDataList(key)) {
+            postings.add(documents.intern(document));
+        }
+        return postings;
+    }
+
+    /**
+     * Set the bit of every id in a posting list
+     *
+     * @param bits     Bit set to update
+     * @param postings Ids to set
+     */
+    private static void markAll(BitSet bits, PostingList postings) {
+        for (int i = 0; i < postings.size(); i++) {
+            bits.set(postings.get(i));
+        }
+    }
+
+    /**
+     * Map posting ids back to documents and sort them alphabetically
+     *
+     * @param postings  Document ids
+     * @param documents Document table the ids refer to
+     * @return The sorted documents
+     */
+    static List<String> toSortedDocuments(
+            PostingList postings, DocumentTable<String> documents
+    ) {
+        String[] sorted = new String[postings.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = documents.get(postings.get(i));
+        }
+        Arrays.sort(sorted);
+        return Arrays.asList(sorted);
     }
 
     /**
@@ -148,64 +638,327 @@ public class SearchEngine {
      * @param documents Output of documents from query
      */
     public static void print(String query, LinkedList<String> documents) {
+        StringBuilder line = new StringBuilder();
+        try {
+            QueryResult.appendLine(line, query, documents);
+        } catch (IOException e) {
+            throw new AssertionError(e); // StringBuilder does not throw
+        }
+        System.out.print(line);
+    }
 
-        if (documents == null || documents.isEmpty()) {
-            System.out.println("The search yielded no results for " + query);
-        } else {
-            System.out.println("Documents related to " + query
-                    + " are: " + documents.toString());
+    /**
+     * Return the tree for a search kind: 0 for actors, 1 for studios and 2 for
+     * ratings
+     *
+     * @param trees      Actor, studio and rating trees, in that order
+     * @param searchKind Kind of search
+     * @return The tree to search, null if searchKind is invalid
+     */
+    private static SearchIndex<String> chooseTree(
+            List<? extends SearchIndex<String>> trees, int searchKind
+    ) {
+        if (searchKind < 0 || searchKind >= trees.size()) {
+            return null;
         }
+        return trees.get(searchKind);
+    }
 
+    /**
+     * Answer one query and write its result. Search kinds 0 to 2 search one
+     * tree with searchMyQuery semantics; search kind 3 evaluates a
+     * cross-field expression such as "actor:vin-diesel AND NOT rating:r"
+     * (see QueryPlanner). A query starting with "--top limit", optionally
+     * followed by "--offset offset", returns one page of ranked results
+     * instead (see rankQuery).
+     *
+     * @param trees      Actor, studio and rating trees, in that order
+     * @param planner    Planner over the same trees, kept across queries
+     * @param searchKind Kind of search, known to be valid
+     * @param query      Query string
+     * @param cache      Cache of evaluated single-tree queries, null for none
+     * @param output     Sink for the result
+     * @throws IOException If writing the result fails
+     */
+    private static void answer(List<? extends SearchIndex<String>> trees, QueryPlanner planner,
+            int searchKind, String query, QueryCache cache, Appendable output)
+            throws IOException {
+        if (query.startsWith(TOP_FLAG + " ")) {
+            answerPage(trees, planner, searchKind, query.split(" "), cache, output);
+            return;
+        }
+        if (searchKind != CROSS_FIELD_KIND) {
+            evaluateQuery(chooseTree(trees, searchKind), query, cache).writeTo(output);
+            return;
+        }
+        try {
+            planner.evaluate(query).writeTo(output);
+        } catch (IllegalArgumentException e) {
+            output.append("Invalid query: ").append(e.getMessage())
+                    .append(System.lineSeparator());
+        }
     }
 
     /**
-     * Main method that processes and query the given arguments
+     * Answer a query of the form "--top limit [--offset offset] query..."
+     * with one page of ranked results
      *
-     * @param args command line arguments
+     * @param trees      Actor, studio and rating trees, in that order
+     * @param planner    Planner over the same trees, kept across queries
+     * @param searchKind Kind of search, known to be valid
+     * @param words      Words of the query, starting with TOP_FLAG
+     * @param cache      Cache of evaluated single-tree queries, null for none
+     * @param output     Sink for the result
+     * @throws IOException If writing the result fails
+     */
+    private static void answerPage(List<? extends SearchIndex<String>> trees,
+            QueryPlanner planner, int searchKind, String[] words, QueryCache cache,
+            Appendable output) throws IOException {
+        RankedResult page;
+        try {
+            int limit = Integer.parseInt(words[1]);
+            int offset = 0;
+            int first = 2; // first word of the query itself
+            if (words.length > 3 && words[2].equals(OFFSET_FLAG)) {
+                offset = Integer.parseInt(words[3]);
+                first = 4;
+            }
+            String query = String.join(" ", Arrays.copyOfRange(words, first, words.length));
+            page = searchKind == CROSS_FIELD_KIND
+                    ? planner.evaluate(query, offset, limit)
+                    : rankQuery(chooseTree(trees, searchKind), query, cache, offset, limit);
+        } catch (IllegalArgumentException e) { // includes NumberFormatException
+            output.append("Invalid query: ").append(e.getMessage())
+                    .append(System.lineSeparator());
+            return;
+        }
+        page.writeTo(output);
+    }
+
+    /**
+     * Answer queries from 'input' until it ends, one per line in the form
+     * "searchKind query terms...", against trees that are already loaded.
+     * Results are printed exactly as in one-shot mode; how long each query
+     * took, and finally how well the query cache did, is reported on
+     * standard error so it does not mix with them.
+     *
+     * @param trees Actor, studio and rating trees, in that order
+     * @param input Source of queries
+     * @throws IOException If reading a query fails
+     */
+    public static void serve(List<? extends SearchIndex<String>> trees, BufferedReader input)
+            throws IOException {
+        serve(trees, input, new BufferedWriter(new OutputStreamWriter(System.out)));
+    }
+
+    /**
+     * Answer queries from 'input' until it ends, writing the results to
+     * 'output' through its buffer; it is flushed after every query
+     *
+     * @param trees  Actor, studio and rating trees, in that order
+     * @param input  Source of queries
+     * @param output Sink for the results
+     * @throws IOException If reading a query or writing a result fails
+     */
+    public static void serve(List<? extends SearchIndex<String>> trees, BufferedReader input,
+            Writer output) throws IOException {
+        QueryCache cache = new QueryCache(QueryCache.DEFAULT_CAPACITY);
+        QueryPlanner planner = new QueryPlanner(trees);
+        int queryNumber = 0;
+        String line;
+        while ((line = input.readLine()) != null) {
+            String[] words = line.trim().split("\\s+");
+            if (words[0].isEmpty()) {
+                continue;
+            }
+
+            int searchKind = -1;
+            try {
+                searchKind = Integer.parseInt(words[0]);
+            } catch (NumberFormatException e) {
+                // fall through to the invalid search kind message
+            }
+            if (searchKind != CROSS_FIELD_KIND && chooseTree(trees, searchKind) == null) {
+                output.write("Invalid search kind." + System.lineSeparator());
+                output.flush();
+                continue;
+            }
+
+            String query = String.join(" ", Arrays.copyOfRange(words, 1, words.length));
+            long start = System.nanoTime();
+            answer(trees, planner, searchKind, query, cache, output);
+            long elapsed = System.nanoTime() - start;
+            output.flush();
+            System.err.printf("query %d took %.3f ms%n", ++queryNumber, elapsed / 1e6);
+        }
+        System.err.printf("query cache: %d hits, %d misses, %d evictions%n",
+                cache.getHits(), cache.getMisses(), cache.getEvictions());
+    }
+
+    /**
+     * Load the search trees for a data file. With an index file, trees are
+     * mapped from it when it was built from the current data file, which is
+     * only read to check this if its size or modification time changed (see
+     * IndexFile.isBuiltFrom); otherwise they are built from the data file and
+     * the index file is (re)written.
+     *
+     * @param fileName  Data file
+     * @param indexFile Index file, or null to always build from the data file
+     * @return Actor, studio and rating trees, or null if the data file is missing
+     * @throws IOException If the index file cannot be written
+     */
+    static List<? extends SearchIndex<String>> loadTrees(String fileName, Path indexFile)
+            throws IOException {
+        return loadTrees(fileName, indexFile, Collections.emptySet());
+    }
+
+    /**
+     * Load the search trees for a data file, as above. The search kinds in
+     * 'radixKinds' are built as a RadixIndex instead of a BSTree; key order
+     * and query results are the same either way. An index file that is
+     * current takes precedence: its mapped trees are returned whatever
+     * 'radixKinds' says, which only applies when the trees are built.
+     *
+     * @param fileName   Data file
+     * @param indexFile  Index file, or null to always build from the data file
+     * @param radixKinds Search kinds to build as a RadixIndex
+     * @return Actor, studio and rating trees, or null if the data file is missing
+     * @throws IOException If the index file cannot be written
      */
-    public static void main(String[] args) {
+    static List<? extends SearchIndex<String>> loadTrees(
+            String fileName, Path indexFile, Set<Integer> radixKinds
+    ) throws IOException {
+        Path source = Paths.get(fileName);
+        IndexFile.Source built = null;
+        if (indexFile != null) {
+            if (Files.exists(indexFile)) {
+                IndexFile index = null;
+                try {
+                    index = IndexFile.open(indexFile);
+                } catch (IOException e) {
+                    System.err.println("rebuilding index: " + e.getMessage());
+                }
+                if (index != null) {
+                    // a stale index is closed before it is rebuilt and written over
+                    try (IndexFile opened = index) {
+                        if (opened.isBuiltFrom(source)) {
+                            return opened.getTrees(); // they keep the mapping after close
+                        }
+                    } catch (NoSuchFileException e) {
+                        return null;
+                    }
+                }
+            }
+            // recorded before building, so a change during the build makes the index stale
+            try {
+                built = IndexFile.Source.of(source);
+            } catch (NoSuchFileException e) {
+                return null;
+            }
+        }
 
-        // initialize search trees
-        BSTree<String> movieTree = new BSTree<>();
-        BSTree<String> studioTree = new BSTree<>();
-        BSTree<String> ratingTree = new BSTree<>();
+        // initialize search trees sharing one table of movie titles
+        DocumentTable<String> documents = new DocumentTable<>();
+        List<UpdatableIndex<String>> trees = new ArrayList<>();
+        for (int searchKind = 0; searchKind < 3; searchKind++) { // actor, studio, rating
+            trees.add(newTree(radixKinds.contains(searchKind), documents));
+        }
+        UpdatableIndex<String> movieTree = trees.get(0);
+        UpdatableIndex<String> studioTree = trees.get(1);
+        UpdatableIndex<String> ratingTree = trees.get(2);
+
+        boolean loaded = new File(fileName).length() >= PARALLEL_LOAD_BYTES
+                ? populateSearchTreesParallel(movieTree, studioTree, ratingTree, fileName)
+                : populateSearchTrees(movieTree, studioTree, ratingTree, fileName);
+        if (!loaded) {
+            return null;
+        }
+        if (indexFile != null) {
+            IndexFile.write(indexFile, built, trees);
+        }
+        return trees;
+    }
+
+    /**
+     * Create an empty search tree in posting-list mode
+     *
+     * @param radix     True for a RadixIndex, false for a BSTree
+     * @param documents Shared table of movie titles
+     * @return The new tree
+     */
+    private static UpdatableIndex<String> newTree(boolean radix, DocumentTable<String> documents) {
+        if (radix) {
+            return new RadixIndex(documents);
+        }
+        // balanced, since data files are often sorted, and hashed since
+        // queries are exact lookups
+        return new BSTree<>(true, documents, true);
+    }
+
+    /**
+     * Main method that processes and query the given arguments. Run as
+     * "fileName searchKind query..." to answer one query (search kind 3 takes
+     * a cross-field expression, see answer), or as
+     * "fileName --serve" to load the trees once and answer queries from
+     * standard input (see serve). "--index indexFile" may precede either to
+     * load the trees from an index file (see loadTrees), and "--radix kinds"
+     * to build the listed search kinds (e.g. "0,1") as a RadixIndex; an
+     * up-to-date index file is used as is, ignoring "--radix". A query
+     * may start with "--top limit [--offset offset]" to get one page of
+     * ranked results (see answer).
+     *
+     * @param args command line arguments
+     * @throws IOException If reading queries or writing the index file fails
+     */
+    public static void main(String[] args) throws IOException {
 
         // process command line arguments
         String fileName = args[0];
-        int searchKind = Integer.parseInt(args[1]);
+        int next = 1;
+        Path indexFile = null;
+        Set<Integer> radixKinds = new HashSet<>();
+        while (INDEX_FLAG.equals(args[next]) || RADIX_FLAG.equals(args[next])) {
+            if (INDEX_FLAG.equals(args[next])) {
+                indexFile = Paths.get(args[next + 1]);
+            } else {
+                for (String kind : args[next + 1].split(",")) {
+                    radixKinds.add(Integer.parseInt(kind.trim()));
+                }
+            }
+            next += 2;
+        }
+        boolean serveMode = SERVE_FLAG.equals(args[next]);
+        int searchKind = serveMode ? 0 : Integer.parseInt(args[next]);
 
         // populate search trees
-        if (!populateSearchTrees(movieTree, studioTree, ratingTree, fileName)) {
+        long start = System.nanoTime();
+        List<? extends SearchIndex<String>> trees = loadTrees(fileName, indexFile, radixKinds);
+        if (trees == null) {
             System.out.println("File not found.");
             return;
         }
 
-        // choose the right tree to query
+        if (serveMode) {
+            System.err.printf("loaded %s in %.3f ms%n", fileName,
+                    (System.nanoTime() - start) / 1e6);
+            serve(trees, new BufferedReader(new InputStreamReader(System.in)));
+            return;
+        }
 
-        BSTree<String> searchTree = null;
-        switch (searchKind) {
-            case 0:
-                searchTree = movieTree;
-                break;
-            case 1:
-                searchTree = studioTree;
-                break;
-            case 2:
-                searchTree = ratingTree;
-                break;
-            default:
-                System.out.println("Invalid search kind.");
-                return;
+        // choose the right tree to query
+        if (searchKind != CROSS_FIELD_KIND && chooseTree(trees, searchKind) == null) {
+            System.out.println("Invalid search kind.");
+            return;
         }
 
         // Build the query from the remaining command line arguments
         StringBuilder query = new StringBuilder();
-        for (int i = 2; i < args.length; i++) {
+        for (int i = next + 1; i < args.length; i++) {
             query.append(args[i]).append(' ');
         }
         String queryString = query.toString().trim();
 
-        // Call searchMyQuery
-        searchMyQuery(searchTree, queryString);
+        // Answer the query
+        answer(trees, new QueryPlanner(trees), searchKind, queryString, null, System.out);
     }
 }
@@ -0,0 +1,461 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+class SearchEngineTester {
+
+    private static final String DATA_FILE = "moviedata.txt";
+
+    private List<BSTree<String>> trees;
+
+    @BeforeEach
+    void setUp() {
+        trees = newTrees(DATA_FILE);
+    }
+
+    /**
+     * Return actor, studio and rating trees in posting-list mode, sharing one
+     * DocumentTable, loaded from a data file; the testers' common fixture
+     */
+    static List<BSTree<String>> newTrees(String dataFile) {
+        DocumentTable<String> documents = new DocumentTable<>();
+        List<BSTree<String>> trees = Arrays.asList(new BSTree<>(true, documents),
+                new BSTree<>(true, documents), new BSTree<>(true, documents));
+        assertTrue(SearchEngine.populateSearchTrees(
+                trees.get(0), trees.get(1), trees.get(2), dataFile));
+        return trees;
+    }
+
+    /**
+     * Run a task and return what it printed to System.out
+     */
+    static String captureOutput(Runnable task) {
+        PrintStream out = System.out;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            System.setOut(new PrintStream(bytes, true));
+            task.run();
+        } finally {
+            System.setOut(out);
+        }
+        return bytes.toString();
+    }
+
+    @Test
+    void testServe() {
+        String input = "0 emma-stone   jesse-eisenberg\n"
+                + "\n"
+                + "1 paramount\n"
+                + "7 paramount\n"
+                + "x paramount\n"
+                + "0 emma-stone jesse-eisenberg\n";
+
+        String expectedQuery = captureOutput(() ->
+                SearchEngine.searchMyQuery(trees.get(0), "emma-stone jesse-eisenberg"));
+        String expectedStudio = captureOutput(() ->
+                SearchEngine.searchMyQuery(trees.get(1), "paramount"));
+
+        PrintStream err = System.err;
+        String output;
+        try {
+            System.setErr(new PrintStream(new ByteArrayOutputStream()));
+            output = captureOutput(() -> {
+                try {
+                    SearchEngine.serve(trees, new BufferedReader(new StringReader(input)));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } finally {
+            System.setErr(err);
+        }
+
+        String invalid = "Invalid search kind." + System.lineSeparator();
+        assertEquals(expectedQuery + expectedStudio + invalid + invalid + expectedQuery,
+                output);
+    }
+
+    @Test
+    void testServeKeepsNotUniverse() throws IOException {
+        // counts the full scans QueryPlanner makes to collect every document
+        int[] fullScans = new int[1];
+        DocumentTable<String> documents = new DocumentTable<>();
+        List<BSTree<String>> counted = new ArrayList<>();
+        for (int searchKind = 0; searchKind < 3; searchKind++) {
+            counted.add(new BSTree<String>(true, documents) {
+                @Override
+                public Iterator<String> range(String lo, String hi) {
+                    if (lo == null && hi == null) {
+                        fullScans[0]++;
+                    }
+                    return super.range(lo, hi);
+                }
+            });
+        }
+        assertTrue(SearchEngine.populateSearchTrees(
+                counted.get(0), counted.get(1), counted.get(2), DATA_FILE));
+
+        StringWriter served = new StringWriter();
+        PrintStream err = System.err;
+        try {
+            System.setErr(new PrintStream(new ByteArrayOutputStream()));
+            SearchEngine.serve(counted, new BufferedReader(new StringReader(
+                    "3 NOT rating:pg13\n3 --top 2 NOT rating:r\n")), served);
+        } finally {
+            System.setErr(err);
+        }
+        assertTrue(served.toString().startsWith("Documents related to NOT rating:pg13"));
+        assertEquals(3, fullScans[0]); // one universe, one scan per tree
+    }
+
+    /**
+     * Write a data file with 'copies' renamed copies of moviedata.txt
+     */
+    private static Path scaledDataFile(int copies) throws IOException {
+        List<String> lines = Files.readAllLines(Paths.get(DATA_FILE));
+        List<String> scaled = new ArrayList<>();
+        for (int copy = 0; copy < copies; copy++) {
+            for (int i = 0; i < lines.size(); i++) {
+                String line = lines.get(i);
+                scaled.add(i % 5 == 0 || i % 5 == 1 ? line.replace(" ", copy + " ") + copy : line);
+            }
+        }
+        Path file = Files.createTempFile("moviedata", ".txt");
+        Files.write(file, scaled);
+        return file;
+    }
+
+    /**
+     * Describe a tree's shape, keys and postings in pre-order
+     */
+    private static String describe(BSTree<String> tree) {
+        StringBuilder description = new StringBuilder();
+        Deque<BSTree<String>.BSTNode> stack = new ArrayDeque<>();
+        if (tree.getRoot() != null) {
+            stack.push(tree.getRoot());
+        }
+        while (!stack.isEmpty()) {
+            BSTree<String>.BSTNode node = stack.pop();
+            description.append(node.getKey()).append(node.getDataList()).append(' ');
+            description.append(node.getLeft() == null ? '.' : 'L');
+            description.append(node.getRight() == null ? '.' : 'R').append('\n');
+            if (node.getRight() != null) {
+                stack.push(node.getRight());
+            }
+            if (node.getLeft() != null) {
+                stack.push(node.getLeft());
+            }
+        }
+        return description.toString();
+    }
+
+    @Test
+    void testParallelBuildMatchesSequential() throws IOException {
+        Path file = scaledDataFile(2000); // several parallel batches
+        try {
+            DocumentTable<String> sequentialDocs = new DocumentTable<>();
+            DocumentTable<String> parallelDocs = new DocumentTable<>();
+            List<BSTree<String>> sequential = new ArrayList<>();
+            List<BSTree<String>> parallel = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                sequential.add(new BSTree<>(true, sequentialDocs));
+                parallel.add(new BSTree<>(true, parallelDocs));
+            }
+
+            assertTrue(SearchEngine.populateSearchTrees(sequential.get(0),
+                    sequential.get(1), sequential.get(2), file.toString()));
+            assertTrue(SearchEngine.populateSearchTreesParallel(parallel.get(0),
+                    parallel.get(1), parallel.get(2), file.toString()));
+
+            assertEquals(sequentialDocs.size(), parallelDocs.size());
+            for (int id = 0; id < sequentialDocs.size(); id++) {
+                assertEquals(sequentialDocs.get(id), parallelDocs.get(id));
+            }
+            for (int i = 0; i < 3; i++) {
+                assertEquals(sequential.get(i).getSize(), parallel.get(i).getSize());
+                assertEquals(describe(sequential.get(i)), describe(parallel.get(i)));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void testParallelBuildErrors() throws IOException {
+        assertFalse(SearchEngine.populateSearchTreesParallel(new BSTree<>(),
+                new BSTree<>(), new BSTree<>(), "no-such-file.txt"));
+
+        Path file = Files.createTempFile("truncated", ".txt");
+        try {
+            Files.write(file, Arrays.asList("chef", "jon-favreau", "paramount", "r", "-",
+                    "solo", "alden-ehrenreich"));
+            NoSuchElementException truncated = assertThrows(NoSuchElementException.class,
+                    () -> SearchEngine.populateSearchTreesParallel(new BSTree<>(),
+                            new BSTree<>(), new BSTree<>(), file.toString()));
+            assertTrue(truncated.getMessage().contains("line 6"), truncated.getMessage());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void testIncrementalUpdates() throws IOException {
+        MovieRecord record = MovieRecord.parse("Barbie",
+                "Margot-Robbie Ryan-Gosling", "Warner-Bros", "PG13");
+        BSTree<String> actors = trees.get(0);
+        int actorCount = actors.getSize();
+
+        SearchEngine.addMovie(trees.get(0), trees.get(1), trees.get(2), record);
+        assertEquals(actorCount + 2, actors.getSize());
+        assertEquals(Arrays.asList("Barbie"), actors.findDataList("margot-robbie"));
+        assertTrue(trees.get(2).findDataList("pg13").contains("Barbie"));
+
+        MovieRecord recast = MovieRecord.parse("Barbie",
+                "Margot-Robbie America-Ferrera", "Warner-Bros", "PG13");
+        assertTrue(SearchEngine.replaceMovie(
+                trees.get(0), trees.get(1), trees.get(2), record, recast));
+        assertFalse(actors.findKey("ryan-gosling"));
+        assertEquals(Arrays.asList("Barbie"), actors.findDataList("america-ferrera"));
+
+        assertTrue(SearchEngine.removeMovie(trees.get(0), trees.get(1), trees.get(2), recast));
+        assertFalse(SearchEngine.removeMovie(trees.get(0), trees.get(1), trees.get(2), recast));
+        assertFalse(trees.get(2).findDataList("pg13").contains("Barbie"));
+        assertEquals(actorCount, actors.getSize());
+        // a removed movie leaves no trace: same output as a never-seen actor
+        assertEquals("The search yielded no results for margot-robbie\n"
+                + "The search yielded no results for margot-robbie\n",
+                captureOutput(() -> SearchEngine.searchMyQuery(actors, "margot-robbie")));
+
+        // a delta file is added on top of the existing trees
+        Path delta = Files.createTempFile("delta", ".txt");
+        try {
+            Files.write(delta, Arrays.asList("Barbie", "Margot-Robbie",
+                    "Warner-Bros", "PG13", "-"));
+            assertTrue(SearchEngine.populateSearchTrees(
+                    trees.get(0), trees.get(1), trees.get(2), delta.toString()));
+            assertEquals(Arrays.asList("Barbie"), actors.findDataList("margot-robbie"));
+            assertTrue(actors.findDataList("emma-stone").size() > 0);
+        } finally {
+            Files.delete(delta);
+        }
+    }
+
+    @Test
+    void testRepeatedDocuments() throws IOException {
+        // an actor listed twice, and two movies with the same title
+        Path file = Files.createTempFile("repeated", ".txt");
+        try {
+            Files.write(file, Arrays.asList("a", "x x y", "s", "R", "-",
+                    "b", "x y", "s", "R", "-", "a", "y", "s2", "PG", "-"));
+            List<BSTree<String>> repeated = newTrees(file.toString());
+
+            // the lines the LinkedList trees printed
+            assertEquals("Documents related to x are: [a, a, b]" + System.lineSeparator(),
+                    SearchEngine.evaluateQuery(repeated.get(0), "x", null).toString());
+            assertEquals(Arrays.asList("a", "b"),
+                    SearchEngine.evaluateQuery(repeated.get(1), "s", null).getCommon());
+            assertEquals(Arrays.asList("a", "a", "b"),
+                    SearchEngine.evaluateQuery(repeated.get(0), "y", null).getCommon());
+            assertEquals(Arrays.asList("a", "a", "b"),
+                    SearchEngine.evaluateQuery(repeated.get(0), "y x", null).getCommon());
+            assertEquals(Arrays.asList("a"),
+                    SearchEngine.evaluateQuery(repeated.get(1), "s s2", null).getCommon());
+
+            // a ranked page lists each document once
+            assertEquals("Documents 1-2 related to x are: [a, b]" + System.lineSeparator(),
+                    SearchEngine.rankQuery(repeated.get(0), "x", null, 0, 5).toString());
+            assertEquals("Documents 1-1 related to x y are: [a] (more after 1)"
+                    + System.lineSeparator(),
+                    SearchEngine.rankQuery(repeated.get(0), "x y", null, 0, 1).toString());
+            RankedResult page = SearchEngine.rankQuery(repeated.get(0), "x y", null, 0, 5);
+            assertEquals("Documents 1-2 related to x y are: [a, b]" + System.lineSeparator(),
+                    page.toString());
+            assertEquals(2, page.getHits().get(1).getScore());
+            page = new QueryPlanner(repeated).evaluate("actor:x OR studio:s", 0, 5);
+            assertEquals("Documents 1-2 related to actor:x OR studio:s are: [a, b]"
+                    + System.lineSeparator(), page.toString());
+            assertEquals(2, page.getHits().get(0).getScore());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void testPrefixQuery() throws IOException {
+        assertEquals(Arrays.asList("jennifer-lawrence", "jeremey-renner", "jesse-eisenberg"),
+                toList(SearchEngine.prefix(trees.get(0), "je")));
+        assertEquals(toList(trees.get(0).iterator()),
+                toList(SearchEngine.prefix(trees.get(0), "")));
+        assertFalse(SearchEngine.prefix(trees.get(0), "zzz").hasNext());
+
+        String expected = "Documents related to robert-* are: [avengers, chef, dolittle, "
+                + "iron-man-2, sherlock-holmes, tropic-thunder, weird-science]\n";
+        assertEquals(expected,
+                captureOutput(() -> SearchEngine.searchMyQuery(trees.get(0), "robert-*")));
+        BSTSnapshot<String> snapshot = trees.get(0).freeze();
+        assertEquals(expected,
+                captureOutput(() -> SearchEngine.searchMyQuery(snapshot, "robert-*")));
+
+        assertEquals("The search yielded no results for zzz*\n"
+                + "The search yielded no results for zzz*\n",
+                captureOutput(() -> SearchEngine.searchMyQuery(trees.get(0), "zzz*")));
+    }
+
+    @Test
+    void testFuzzyQuery() {
+        assertEquals("Documents related to scarlet-johansson~ are: [avengers, chef, "
+                + "iron-man-2, jojo-rabbit, we-bought-a-zoo]\n"
+                + "Closest keys to scarlet-johansson~ are: [scarlett-johansson]\n",
+                captureOutput(() -> SearchEngine.searchMyQuery(trees.get(0),
+                        "scarlet-johansson~")));
+
+        // too few edits allowed, so only the exact term contributes
+        QueryCache cache = new QueryCache(4);
+        for (int i = 0; i < 2; i++) {
+            QueryResult result = SearchEngine.evaluateQuery(trees.get(0),
+                    "scarlet-johanson~1 robert-downey-jr", cache);
+            assertEquals(Collections.emptyList(), result.getCommon());
+            assertEquals(Collections.emptyList(),
+                    result.getSuggestions().get("scarlet-johanson~1"));
+            assertEquals(Collections.singleton("scarlet-johanson~1"),
+                    result.getSuggestions().keySet());
+        }
+        assertEquals(1, cache.getHits());
+
+        QueryResult result = SearchEngine.evaluateQuery(trees.get(0), "scarlet-johanson~", null);
+        assertEquals(Arrays.asList("scarlett-johansson"),
+                toList(result.getSuggestions().get("scarlet-johanson~").stream()
+                        .map(FuzzySearch.Match::getKey).iterator()));
+        assertEquals(2, result.getSuggestions().get("scarlet-johanson~").get(0).getDistance());
+
+        // a bound above the maximum is capped; anything else after '~' is literal
+        assertFalse(SearchEngine.evaluateQuery(trees.get(2), "p~9", null).getCommon().isEmpty());
+        assertTrue(SearchEngine.evaluateQuery(trees.get(2), "pg13~x", null)
+                .getSuggestions().isEmpty());
+        assertTrue(SearchEngine.evaluateQuery(trees.get(2), "pg13", null)
+                .getSuggestions().isEmpty());
+    }
+
+    @Test
+    void testRankedQuery() {
+        String[] actors = toList(trees.get(0).iterator()).toArray(new String[0]);
+        Random random = new Random(25);
+        for (int i = 0; i < 200; i++) {
+            // a few actors, maybe repeated, maybe missing
+            StringBuilder query = new StringBuilder(actors[random.nextInt(actors.length)]);
+            for (int j = random.nextInt(4); j > 0; j--) {
+                query.append(' ').append(random.nextBoolean()
+                        ? actors[random.nextInt(actors.length)] : "nobody");
+            }
+
+            // expected ranking: most distinct terms matched, then title
+            Map<String, Integer> scores = new HashMap<>();
+            for (String term : new HashSet<>(Arrays.asList(query.toString().split(" ")))) {
+                if (trees.get(0).findKey(term)) {
+                    for (String title : trees.get(0).findDataList(term)) {
+                        scores.merge(title, 1, Integer::sum);
+                    }
+                }
+            }
+            List<String> expected = new ArrayList<>(scores.keySet());
+            expected.sort(Comparator.comparing((String title) -> -scores.get(title))
+                    .thenComparing(title -> title));
+
+            int limit = 1 + random.nextInt(4);
+            List<String> ranked = new ArrayList<>();
+            for (int offset = 0; ; offset += limit) {
+                RankedResult page = SearchEngine.rankQuery(
+                        trees.get(0), query.toString(), null, offset, limit);
+                assertEquals(offset, page.getOffset());
+                for (RankedResult.Hit hit : page.getHits()) {
+                    ranked.add(hit.getDocument());
+                    assertEquals((int) scores.get(hit.getDocument()), hit.getScore());
+                }
+                assertEquals(offset + limit < expected.size(), page.hasMore());
+                if (!page.hasMore()) {
+                    break;
+                }
+            }
+            assertEquals(expected, ranked);
+        }
+
+        assertEquals("Documents 1-2 related to pg13 are: [avengers, batman-vs-superman] "
+                + "(more after 2)\n", SearchEngine.rankQuery(trees.get(2), "pg13", null, 0, 2)
+                .toString());
+        assertEquals("The search yielded no results for pg13\n",
+                SearchEngine.rankQuery(trees.get(2), "pg13", null, 1000, 2).toString());
+        assertThrows(IllegalArgumentException.class,
+                () -> SearchEngine.rankQuery(trees.get(2), "pg13", null, 0, 0));
+
+        QueryPlanner planner = new QueryPlanner(trees);
+        List<String> all = new ArrayList<>(
+                planner.evaluate("rating:pg13 OR studio:paramount").getCommon());
+        Map<String, Integer> scores = new HashMap<>();
+        for (String term : new String[] {"rating:pg13", "studio:paramount"}) {
+            for (String document : planner.evaluate(term).getCommon()) {
+                scores.merge(document, 1, Integer::sum);
+            }
+        }
+        all.sort(Comparator.comparing((String document) -> -scores.get(document))
+                .thenComparing(Comparator.naturalOrder()));
+        RankedResult page = planner.evaluate("rating:pg13 OR studio:paramount", 0, 4);
+        assertEquals(all.subList(0, 4), toList(page.getHits().stream()
+                .map(RankedResult.Hit::getDocument).iterator()));
+        assertEquals(2, page.getHits().get(0).getScore());
+        page = planner.evaluate("rating:pg13 AND NOT studio:paramount", 0, 4);
+        assertEquals(1, page.getHits().get(0).getScore());
+    }
+
+    @Test
+    void testEvaluateQuery() throws IOException {
+        QueryResult result = SearchEngine.evaluateQuery(
+                trees.get(0), "vin-diesel nobody", null);
+        assertEquals("vin-diesel nobody", result.getQuery());
+        assertTrue(result.getCommon().isEmpty());
+        assertEquals(2, result.getTermResults().size());
+        assertEquals("vin-diesel", result.getTermResults().get(0).getTerm());
+        assertEquals(trees.get(0).findDataList("vin-diesel").stream().sorted()
+                        .collect(java.util.stream.Collectors.toList()),
+                result.getTermResults().get(0).getDocuments());
+        assertTrue(result.getTermResults().get(1).getDocuments().isEmpty());
+
+        // every sink gets the text searchMyQuery prints
+        for (String query : new String[] {"vin-diesel nobody", "emma-stone jesse-eisenberg",
+                "robert-downey-jr robert-downey-jr", "robert-*"}) {
+            String printed = captureOutput(() -> SearchEngine.searchMyQuery(trees.get(0), query));
+            StringWriter sink = new StringWriter();
+            SearchEngine.evaluateQuery(trees.get(0), query, null).writeTo(sink);
+            assertEquals(printed, sink.toString());
+            assertEquals(printed, SearchEngine.evaluateQuery(trees.get(0), query, null).toString());
+        }
+
+        StringWriter served = new StringWriter();
+        PrintStream err = System.err;
+        try {
+            System.setErr(new PrintStream(new ByteArrayOutputStream()));
+            SearchEngine.serve(trees, new BufferedReader(new StringReader(
+                    "9 x\n1 paramount\n3 studio:paramount AND NOT rating:pg13\n3 oops\n")),
+                    served);
+        } finally {
+            System.setErr(err);
+        }
+        assertEquals("Invalid search kind." + System.lineSeparator()
+                + captureOutput(() -> SearchEngine.searchMyQuery(trees.get(1), "paramount"))
+                + "Documents related to studio:paramount AND NOT rating:pg13 are: "
+                + "[tropic-thunder]" + System.lineSeparator()
+                + "Invalid query: expected field:value instead of 'oops'; "
+                + "fields are actor, studio, rating" + System.lineSeparator(),
+                served.toString());
+    }
+
+    /**
+     * Drain an iterator into a list
+     */
+    private static <T> List<T> toList(Iterator<T> iterator) {
+        List<T> list = new ArrayList<>();
+        iterator.forEachRemaining(list::add);
+        return list;
+    }
+}
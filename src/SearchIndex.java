@@ -0,0 +1,83 @@
+/*
+ * Name: Felix Najera
+ * PID:  A17618969
+ */
+
+import java.util.*;
+
+/**
+ * Read side of a search index: a set of keys, each with a list of related
+ * documents. SearchEngine queries go through this interface so they can run
+ * against a live BSTree or a read-only snapshot of one.
+ *
+ * @author Felix Najera
+ * @since  8/27/24
+ */
+public interface SearchIndex<T extends Comparable<? super T>> {
+
+    /**
+     * Return true if the 'key' is found in the index, false otherwise
+     *
+     * @param key To be searched
+     * @return True if the 'key' is found, false otherwise
+     * @throws NullPointerException If key is null
+     */
+    boolean findKey(T key);
+
+    /**
+     * Return the documents related to 'key'
+     *
+     * @param key Target key
+     * @return List of documents related to key
+     * @throws NullPointerException     If key is null
+     * @throws IllegalArgumentException If key is not found in the index
+     */
+    List<T> findDataList(T key);
+
+    /**
+     * Return the sorted ids (in getDocuments()) of the documents related to
+     * 'key'. The list must not be modified by the caller.
+     *
+     * @param key Target key
+     * @return PostingList of key
+     * @throws NullPointerException     If key is null
+     * @throws IllegalArgumentException If key is not found in the index
+     * @throws IllegalStateException    If the index does not store postings
+     */
+    PostingList findPostings(T key);
+
+    /**
+     * Return the document table that posting ids refer to
+     *
+     * @return The document table, null if the index does not store postings
+     */
+    DocumentTable<T> getDocuments();
+
+    /**
+     * Return an iterator over the keys from 'lo' (inclusive) to 'hi'
+     * (exclusive) in ascending order
+     *
+     * @param lo Smallest key to return, null for no lower bound
+     * @param hi Stop before this key, null for no upper bound
+     * @return Iterator over the keys in range
+     */
+    Iterator<T> range(T lo, T hi);
+
+    /**
+     * Return the number of keys in the index
+     *
+     * @return The number of keys
+     */
+    int getSize();
+
+    /**
+     * Return a number that changes whenever keys or their documents change,
+     * so results computed from the index can be checked for staleness.
+     * Indexes that never change keep the default of 0.
+     *
+     * @return The index version
+     */
+    default long getVersion() {
+        return 0;
+    }
+}
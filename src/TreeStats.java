@@ -0,0 +1,223 @@
+/*
+ * Name: Felix Najera
+ * PID:  A17618969
+ */
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Statistics of a BSTree gathered in one pass: size, height, key count and
+ * smallest/largest key per level, and a histogram of the lengths of the
+ * nodes' lists. The pass runs on the common ForkJoinPool; a subtree is split
+ * off into its own task only while both of a node's children are large, so
+ * degenerate trees are walked iteratively instead of recursing.
+ *
+ * @author Felix Najera
+ * @since  8/27/24
+ */
+public class TreeStats<T extends Comparable<? super T>> {
+
+    private static final int SPLIT_SIZE = 8192; // smaller subtrees stay in one task
+    private static final int HISTOGRAM_BUCKETS = Integer.SIZE + 1;
+
+    private final int[] levelCounts; // number of nodes, by level
+    private final ArrayList<T> levelMins; // smallest key, by level
+    private final ArrayList<T> levelMaxes; // largest key, by level
+    private final long[] histogram; // nodes by bucket of list length
+    private int size;
+
+    /**
+     * Constructor for empty statistics
+     *
+     * @param levels Number of levels to make room for
+     */
+    private TreeStats(int levels) {
+        levelCounts = new int[levels];
+        levelMins = new ArrayList<>(Collections.nCopies(levels, null));
+        levelMaxes = new ArrayList<>(Collections.nCopies(levels, null));
+        histogram = new long[HISTOGRAM_BUCKETS];
+    }
+
+    /**
+     * Compute the statistics of a tree. The tree must not be modified while
+     * this runs.
+     *
+     * @param tree Tree to examine
+     * @return Its statistics
+     */
+    static <T extends Comparable<? super T>> TreeStats<T> of(BSTree<T> tree) {
+        int levels = tree.findHeight() + 1;
+        if (tree.getRoot() == null) {
+            return new TreeStats<>(levels);
+        }
+        return ForkJoinPool.commonPool().invoke(new StatsTask<>(tree.getRoot(), 0, levels));
+    }
+
+    /**
+     * Return the number of keys
+     *
+     * @return The number of keys
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Return the height, the deepest level that holds a node
+     *
+     * @return The height, -1 for an empty tree
+     */
+    public int getHeight() {
+        int height = levelCounts.length - 1;
+        while (height >= 0 && levelCounts[height] == 0) {
+            height--;
+        }
+        return height;
+    }
+
+    /**
+     * Return the number of nodes on a level
+     *
+     * @param level Level, 0 being the root
+     * @return The number of nodes, 0 below the deepest level
+     */
+    public int getLevelCount(int level) {
+        return level >= 0 && level < levelCounts.length ? levelCounts[level] : 0;
+    }
+
+    /**
+     * Return the smallest key on a level
+     *
+     * @param level Level, 0 being the root
+     * @return The smallest key, null if the level is empty
+     */
+    public T getLevelMin(int level) {
+        return level >= 0 && level < levelMins.size() ? levelMins.get(level) : null;
+    }
+
+    /**
+     * Return the largest key on a level
+     *
+     * @param level Level, 0 being the root
+     * @return The largest key, null if the level is empty
+     */
+    public T getLevelMax(int level) {
+        return level >= 0 && level < levelMaxes.size() ? levelMaxes.get(level) : null;
+    }
+
+    /**
+     * Return a histogram of list lengths. Entry 0 counts keys with an empty
+     * list and entry i > 0 counts keys whose list has between 2^(i-1) and
+     * 2^i - 1 documents.
+     *
+     * @return A copy of the histogram
+     */
+    public long[] getPostingHistogram() {
+        return histogram.clone();
+    }
+
+    /**
+     * Account for one node
+     *
+     * @param key      The node's key
+     * @param level    The node's level
+     * @param dataSize Length of the node's list
+     */
+    private void add(T key, int level, int dataSize) {
+        size++;
+        levelCounts[level]++;
+        T min = levelMins.get(level);
+        if (min == null || key.compareTo(min) < 0) {
+            levelMins.set(level, key);
+        }
+        T max = levelMaxes.get(level);
+        if (max == null || key.compareTo(max) > 0) {
+            levelMaxes.set(level, key);
+        }
+        histogram[Integer.SIZE - Integer.numberOfLeadingZeros(dataSize)]++;
+    }
+
+    /**
+     * Fold the statistics of another part of the tree into these
+     *
+     * @param other Statistics of a disjoint part of the same tree
+     */
+    private void merge(TreeStats<T> other) {
+        size += other.size;
+        for (int level = 0; level < levelCounts.length; level++) {
+            if (other.levelCounts[level] == 0) {
+                continue;
+            }
+            levelCounts[level] += other.levelCounts[level];
+            T min = levelMins.get(level);
+            if (min == null || other.levelMins.get(level).compareTo(min) < 0) {
+                levelMins.set(level, other.levelMins.get(level));
+            }
+            T max = levelMaxes.get(level);
+            if (max == null || other.levelMaxes.get(level).compareTo(max) > 0) {
+                levelMaxes.set(level, other.levelMaxes.get(level));
+            }
+        }
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] += other.histogram[i];
+        }
+    }
+
+    /**
+     * Gathers the statistics of one subtree. Walks it with an explicit stack
+     * and forks the left child off as a new task wherever both children are
+     * at least SPLIT_SIZE keys.
+     */
+    @SuppressWarnings("serial") // never serialized
+    private static class StatsTask<T extends Comparable<? super T>>
+            extends RecursiveTask<TreeStats<T>> {
+        private final BSTree<T>.BSTNode subtree;
+        private final int level; // level of the subtree root
+        private final int levels; // number of levels in the whole tree
+
+        StatsTask(BSTree<T>.BSTNode subtree, int level, int levels) {
+            this.subtree = subtree;
+            this.level = level;
+            this.levels = levels;
+        }
+
+        @Override
+        protected TreeStats<T> compute() {
+            TreeStats<T> stats = new TreeStats<>(levels);
+            List<StatsTask<T>> forked = new ArrayList<>();
+            ArrayDeque<BSTree<T>.BSTNode> nodes = new ArrayDeque<>();
+            ArrayDeque<Integer> nodeLevels = new ArrayDeque<>();
+            nodes.push(subtree);
+            nodeLevels.push(level);
+
+            while (!nodes.isEmpty()) {
+                BSTree<T>.BSTNode node = nodes.pop();
+                int nodeLevel = nodeLevels.pop();
+                stats.add(node.getKey(), nodeLevel, node.dataSize());
+
+                BSTree<T>.BSTNode left = node.getLeft();
+                BSTree<T>.BSTNode right = node.getRight();
+                if (left != null && right != null
+                        && left.size >= SPLIT_SIZE && right.size >= SPLIT_SIZE) {
+                    StatsTask<T> task = new StatsTask<>(left, nodeLevel + 1, levels);
+                    task.fork();
+                    forked.add(task);
+                } else if (left != null) {
+                    nodes.push(left);
+                    nodeLevels.push(nodeLevel + 1);
+                }
+                if (right != null) {
+                    nodes.push(right);
+                    nodeLevels.push(nodeLevel + 1);
+                }
+            }
+
+            for (StatsTask<T> task : forked) {
+                stats.merge(task.join());
+            }
+            return stats;
+        }
+    }
+}
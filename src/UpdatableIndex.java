@@ -0,0 +1,37 @@
+/*
+ * Name: Felix Najera
+ * PID:  A17618969
+ */
+
+/**
+ * Search index that can also be updated one document at a time.
+ * SearchEngine populates and updates its indexes through this interface, so
+ * each of them can be a BSTree or a RadixIndex.
+ *
+ * @author Felix Najera
+ * @since  8/27/24
+ */
+public interface UpdatableIndex<T extends Comparable<? super T>> extends SearchIndex<T> {
+
+    /**
+     * Insert 'key' if it is not in the index yet and append 'data' to its
+     * list
+     *
+     * @param key  Target key
+     * @param data To be added to key's list
+     * @return True if the key was newly inserted, false if it already existed
+     * @throws NullPointerException If either key or data is null
+     */
+    boolean insertOrAppend(T key, T data);
+
+    /**
+     * Remove 'data' from the list of 'key'. The key is removed from the
+     * index once its list becomes empty.
+     *
+     * @param key  Target key
+     * @param data To be removed from key's list
+     * @return True if data was found and removed, false otherwise
+     * @throws NullPointerException If either key or data is null
+     */
+    boolean removeData(T key, T data);
+}